@@ -0,0 +1,248 @@
+package com.sudoku.dj.sudokusolver;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.Choreographer;
+import android.view.View;
+
+import com.sudoku.dj.sudokusolver.solver.BoardSnapshot;
+import com.sudoku.dj.sudokusolver.solver.CellChangeTracker;
+import com.sudoku.dj.sudokusolver.solver.CellModel;
+
+/**
+ * Draws the whole board on one canvas.  The view follows its model with a
+ * {@link CellChangeTracker}, whose first change after a frame asks the {@link Choreographer}
+ * for the next one.  At that frame the view takes the model's latest {@link BoardSnapshot}, so
+ * a solver changing thousands of cells a second costs at most one redraw per frame, and the
+ * view never reads the board while it is being changed.  Only the area around the cells
+ * drained from the tracker is invalidated, and cells outside the clip are not drawn.
+ */
+public class BoardView extends View {
+    private static final int SIZE = CellModel.MAX_CELLS_IN_GROUP;
+    private static final int CUBE = CellModel.MAX_CELLS_IN_CUBE;
+    private static final String[] DIGITS = {"", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+    private static final float TEXT_SIZE_SP = 24;
+    private static final float LINE_DP = 1;
+    private static final int CUBE_GAP_PX = 8;
+    private static final int CELL_COLOR = 0xCCFFFFFF;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // only read and written on the UI thread
+    private final int[] changed = new int[CellModel.MAX_CELLS];
+    private final Rect dirty = new Rect();
+    private final Paint cellPaint, linePaint, lockedPaint, solvedPaint;
+    private CellModel model;
+    private BoardSnapshot shown;
+    private CellModel.ChangeListenerRegistration registration;
+    private float cellSize;
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            int count = takeSnapshot();
+            if (count > 0) {
+                invalidateCells(count);
+            }
+        }
+    };
+
+    private final Runnable requestFrame = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
+    };
+
+    // called on whichever thread changed the model, and a Choreographer belongs to the thread
+    // of its looper
+    private final CellChangeTracker tracker = new CellChangeTracker(new Runnable() {
+        @Override
+        public void run() {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                requestFrame.run();
+            } else {
+                mainHandler.post(requestFrame);
+            }
+        }
+    });
+
+    public BoardView(Context context) {
+        this(context, null);
+    }
+
+    public BoardView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public BoardView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        cellPaint = new Paint();
+        cellPaint.setColor(CELL_COLOR);
+        linePaint = new Paint();
+        linePaint.setColor(Color.BLACK);
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeWidth(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, LINE_DP,
+                getResources().getDisplayMetrics()));
+        float textSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TEXT_SIZE_SP,
+                getResources().getDisplayMetrics());
+        lockedPaint = buildTextPaint(textSize, ContextCompat.getColor(context, android.R.color.black));
+        solvedPaint = buildTextPaint(textSize, ContextCompat.getColor(context, R.color.colorPrimaryDark));
+    }
+
+    private static Paint buildTextPaint(float textSize, int color) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(textSize);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setTypeface(Typeface.DEFAULT_BOLD);
+        paint.setColor(color);
+        return paint;
+    }
+
+    /**
+     * Sets the model to draw, following its changes while the view is attached.
+     */
+    public void setModel(CellModel model) {
+        if (this.model == model) {
+            redrawAll();
+            return;
+        }
+        stopTracking();
+        this.model = model;
+        if (isAttachedToWindow()) {
+            startTracking();
+        }
+    }
+
+    private void startTracking() {
+        if (model != null && registration == null) {
+            registration = model.addTracker(tracker);
+            redrawAll();
+        }
+    }
+
+    private void stopTracking() {
+        if (registration != null) {
+            registration.unregister();
+            registration = null;
+        }
+    }
+
+    private void redrawAll() {
+        tracker.markAll();
+        // the tracker does not signal again until drained, and a detach drops its frame
+        requestFrame.run();
+    }
+
+    /**
+     * Takes the latest snapshot if the board changed.
+     * @return The number of changed cells, whose IDs are in changed, or 0 if nothing changed.
+     */
+    private int takeSnapshot() {
+        int count = tracker.drain(changed);
+        if (count == 0 || model == null) {
+            return 0;
+        }
+        BoardSnapshot latest = model.getSnapshot();
+        if (shown != null && shown.getVersion() == latest.getVersion()) {
+            return 0;
+        }
+        shown = latest;
+        return count;
+    }
+
+    private void invalidateCells(int count) {
+        if (cellSize <= 0) {
+            invalidate();
+            return;
+        }
+        dirty.setEmpty();
+        for (int i=0; i<count; i++) {
+            int row = changed[i] / SIZE;
+            int col = changed[i] % SIZE;
+            int left = (int)getCellLeft(col);
+            int top = (int)getCellTop(row);
+            dirty.union(left, top, (int)Math.ceil(left + cellSize) + 1, (int)Math.ceil(top + cellSize) + 1);
+        }
+        invalidate(dirty);
+    }
+
+    private float getCellLeft(int col) {
+        return getPaddingLeft() + (col * cellSize) + ((col / CUBE) * CUBE_GAP_PX);
+    }
+
+    private float getCellTop(int row) {
+        return getPaddingTop() + (row * cellSize) + ((row / CUBE) * CUBE_GAP_PX);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        startTracking();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        stopTracking();
+        mainHandler.removeCallbacks(requestFrame);
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        int width = getMeasuredWidth();
+        int height = getMeasuredHeight();
+        if (MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.EXACTLY) {
+            height = Math.min(height, width);
+        }
+        int side = Math.min(width, height);
+        setMeasuredDimension(side, side);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        int inner = Math.min(w - getPaddingLeft() - getPaddingRight(), h - getPaddingTop() - getPaddingBottom());
+        cellSize = (float)(inner - ((CUBE - 1) * CUBE_GAP_PX)) / SIZE;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (cellSize <= 0) {
+            return;
+        }
+        float half = linePaint.getStrokeWidth() / 2;
+        for (int row=0; row<SIZE; row++) {
+            float top = getCellTop(row);
+            for (int col=0; col<SIZE; col++) {
+                float left = getCellLeft(col);
+                float right = left + cellSize;
+                float bottom = top + cellSize;
+                if (canvas.quickReject(left, top, right, bottom, Canvas.EdgeType.AA)) {
+                    // outside the cells invalidated for this frame
+                    continue;
+                }
+                canvas.drawRect(left, top, right, bottom, cellPaint);
+                canvas.drawRect(left + half, top + half, right - half, bottom - half, linePaint);
+                int id = (row * SIZE) + col;
+                int value = shown == null ? 0 : shown.getValue(id);
+                if (value != 0) {
+                    Paint paint = shown.isLocked(id) ? lockedPaint : solvedPaint;
+                    float baseline = top + (cellSize / 2) - ((paint.descent() + paint.ascent()) / 2);
+                    canvas.drawText(DIGITS[value], left + (cellSize / 2), baseline, paint);
+                }
+            }
+        }
+    }
+}
@@ -13,8 +13,10 @@ import android.widget.Toast;
 
 import com.sudoku.dj.sudokusolver.solver.CellModelManager;
 import com.sudoku.dj.sudokusolver.solver.CurrentSolverStatsManager;
-import com.sudoku.dj.sudokusolver.tasks.BackgroundTaskManager;
+import com.sudoku.dj.sudokusolver.solver.DifficultyGrader;
+import com.sudoku.dj.sudokusolver.solver.Solver;
 import com.sudoku.dj.sudokusolver.tasks.SolveTask;
+import com.sudoku.dj.sudokusolver.tasks.TaskScheduler;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -62,39 +64,71 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void onBuildNewBoardClick() {
-        if (BackgroundTaskManager.getInstance().isSolvingBoard()) {
+        if (TaskScheduler.getInstance().isRunning(TaskScheduler.Kind.SOLVE)) {
             Toast.makeText(this, "Cannot create a new board while solving the current board", Toast.LENGTH_SHORT).show();
-        } else if (BackgroundTaskManager.getInstance().isCreatingNewBoard()) {
+        } else if (TaskScheduler.getInstance().isRunning(TaskScheduler.Kind.NEW_BOARD)) {
             Toast.makeText(this, "New board task is currently running", Toast.LENGTH_SHORT).show();
         } else {
-            resetSolveButtonIcon();
-            showProgressFragment();
-            CellModelManager.buildNewBoard(this);
+            showNewBoardDialog();
         }
     }
 
+    private void showNewBoardDialog() {
+        final DifficultyGrader.Level[] levels = DifficultyGrader.Level.values();
+        String[] items = new String[levels.length + 1];
+        items[0] = "Any";
+        for (int i=0; i<levels.length; i++) {
+            String name = levels[i].name();
+            items[i + 1] = name.charAt(0) + name.substring(1).toLowerCase();
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("New Board")
+                .setItems(items, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        if (TaskScheduler.getInstance().isRunning(CellModelManager.getInstance())) {
+                            return;
+                        }
+                        resetSolveButtonIcon();
+                        if (which == 0) {
+                            CellModelManager.buildNewBoard(MainActivity.this);
+                        } else {
+                            CellModelManager.buildNewBoard(MainActivity.this, levels[which - 1]);
+                        }
+                    }
+                })
+                .show();
+    }
+
     private void onSolveClick(MenuItem item) {
-        if (BackgroundTaskManager.getInstance().isCreatingNewBoard()) {
+        if (TaskScheduler.getInstance().isRunning(TaskScheduler.Kind.NEW_BOARD)) {
             // do nothing
             return;
         }
 
         try {
-            if (CellModelManager.getInstance().isSolved()) {
+            // the board may be changing on the solver thread
+            if (CellModelManager.getInstance().getSnapshot().isSolved()) {
                 String message = buildSolvedMessage(CurrentSolverStatsManager.getInstance().getSolveStats());
                 Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
                 return;
             }
 
-            if (BackgroundTaskManager.getInstance().isSolvingBoard()) {
+            if (TaskScheduler.getInstance().isRunning(TaskScheduler.Kind.SOLVE)) {
                 item.setIcon(android.R.drawable.ic_media_play);
-                BackgroundTaskManager.getInstance().cancelTask();
+                TaskScheduler.getInstance().cancel(TaskScheduler.Kind.SOLVE);
                 return;
             }
 
             item.setIcon(android.R.drawable.ic_media_pause);
-            SolveTask task = new SolveTask(new SolveListenerImpl(this));
-            BackgroundTaskManager.getInstance().runTask(task, CellModelManager.getInstance());
+            SolveTask task;
+            if (Runtime.getRuntime().availableProcessors() > 1) {
+                // race differently seeded solvers, one per core, and keep the first result
+                task = SolveTask.buildPortfolioTask(new SolveListenerImpl(this));
+            } else {
+                task = new SolveTask(new SolveListenerImpl(this), Solver.SolverType.DANCING_LINKS);
+            }
+            TaskScheduler.getInstance().submit(TaskScheduler.Kind.SOLVE, task, CellModelManager.getInstance());
         } catch (Exception e) {
             Toast.makeText(this, e.getMessage(), Toast.LENGTH_SHORT).show();
         }
@@ -109,12 +143,12 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void onResetClick() {
-        if (BackgroundTaskManager.getInstance().isCreatingNewBoard()) {
+        if (TaskScheduler.getInstance().isRunning(TaskScheduler.Kind.NEW_BOARD)) {
             // do nothing
             return;
         }
 
-        if (BackgroundTaskManager.getInstance().isSolvingBoard()) {
+        if (TaskScheduler.getInstance().isRunning(TaskScheduler.Kind.SOLVE)) {
             Toast.makeText(this, "Cannot reset board while solving", Toast.LENGTH_SHORT).show();
         } else {
             CellModelManager.getInstance().resetCells();
@@ -161,6 +195,8 @@ public class MainActivity extends AppCompatActivity {
 
     private static class SolveListenerImpl implements SolveTask.SolverListener {
         private final MainActivity activity;
+        // reused, so reports arriving every second replace each other instead of queueing
+        private Toast progressToast;
 
         public SolveListenerImpl(MainActivity activity) {
             this.activity = activity;
@@ -181,16 +217,33 @@ public class MainActivity extends AppCompatActivity {
             Toast.makeText(activity, message, Toast.LENGTH_SHORT).show();
         }
 
+        @Override
+        public void onUnsolvable(SolveTask.SolveStats stats) {
+            if (activity.isDestroyed() || activity.isFinishing()) {
+                return;
+            }
+            activity.resetSolveButtonIcon();
+            Toast.makeText(activity, "This board has no solution", Toast.LENGTH_SHORT).show();
+        }
+
         @Override
         public void onLongRunningTask(SolveTask.SolveStats stats) {
             if (activity.isDestroyed() || activity.isFinishing()) {
                 return;
             }
             SimpleDateFormat df = new SimpleDateFormat("mm:ss.SSS");
-            String message = new StringBuilder()
+            StringBuilder message = new StringBuilder()
                     .append("Run time: "+df.format(new Date(stats.getElapsedTime())))
-                    .toString();
-            Toast.makeText(activity, message, Toast.LENGTH_SHORT).show();
+                    .append("\nSteps: "+stats.getSteps());
+            if (stats instanceof SolveTask.ProgressStats) {
+                message.append("\nDepth: "+((SolveTask.ProgressStats)stats).getDepth());
+            }
+            if (progressToast == null) {
+                progressToast = Toast.makeText(activity, message.toString(), Toast.LENGTH_SHORT);
+            } else {
+                progressToast.setText(message.toString());
+            }
+            progressToast.show();
         }
     }
 }
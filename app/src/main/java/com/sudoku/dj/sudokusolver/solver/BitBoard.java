@@ -0,0 +1,468 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+/**
+ * A compact, primitive representation of the Sudoku board.  Each cell stores its value in a
+ * flat array, and each of the 27 groups (9 horizontal, 9 vertical, 9 cubes) keeps a bit mask of
+ * the values used by its cells, where bit (n - 1) represents the value n.  The candidate mask
+ * of every cell is kept alongside the values, so reading the available values of a cell never
+ * requires scanning its groups or allocating a collection.
+ *
+ * Setting or clearing a value only touches the 20 peers of the cell: candidate masks and counts
+ * are adjusted in place, along with running totals of filled cells, empty cells without
+ * candidates and duplicated values, so isSolveable() and isSolved() never scan the board.
+ *
+ * After mark() is called, every value placed and every candidate removed is recorded on a
+ * trail, and undo() pops the trail back to a mark, restoring the exact earlier masks without
+ * recomputing them.  While the trail is recording, cells can only be filled, not cleared.
+ *
+ * Group indexes are laid out as horizontal groups first, then vertical groups, then cubes, so
+ * that the three groups of a cell can be addressed with a single array.
+ */
+public final class BitBoard {
+    public static final int MAX_CELLS = CellModel.MAX_CELLS;
+    public static final int MAX_CELLS_IN_GROUP = CellModel.MAX_CELLS_IN_GROUP;
+    public static final int MAX_GROUPS = MAX_CELLS_IN_GROUP * 3;
+    public static final int MAX_PEERS = 20;
+    public static final int ALL_VALUES = (1 << MAX_CELLS_IN_GROUP) - 1;
+
+    public static final int HORIZONTAL_OFFSET = 0;
+    public static final int VERTICAL_OFFSET = MAX_CELLS_IN_GROUP;
+    public static final int CUBE_OFFSET = MAX_CELLS_IN_GROUP * 2;
+
+    private static final int NO_VALUE = 0;
+
+    // trail entries are packed as (kind << 30) | (value << 24) | (id << 16) | mask
+    private static final int TRAIL_PEER = 0;
+    private static final int TRAIL_PLACE = 1;
+
+    /** The three group indexes of each cell: horizontal, vertical, then cube. */
+    static final int[][] CELL_GROUPS = new int[MAX_CELLS][3];
+
+    /** The cell indexes that belong to each group. */
+    static final int[][] GROUP_CELLS = new int[MAX_GROUPS][MAX_CELLS_IN_GROUP];
+
+    /** The 20 other cells that share at least one group with each cell. */
+    static final int[][] PEERS = new int[MAX_CELLS][MAX_PEERS];
+
+    /** The number of bits set for each possible candidate mask. */
+    static final byte[] BIT_COUNT = new byte[ALL_VALUES + 1];
+
+    static {
+        int cube = CellModel.MAX_CELLS_IN_CUBE;
+        int[] groupSizes = new int[MAX_GROUPS];
+        for (int id=0; id<MAX_CELLS; id++) {
+            int h = id / MAX_CELLS_IN_GROUP;
+            int v = id % MAX_CELLS_IN_GROUP;
+            int c = ((h / cube) * cube) + (v / cube);
+            CELL_GROUPS[id][0] = HORIZONTAL_OFFSET + h;
+            CELL_GROUPS[id][1] = VERTICAL_OFFSET + v;
+            CELL_GROUPS[id][2] = CUBE_OFFSET + c;
+            for (int group: CELL_GROUPS[id]) {
+                GROUP_CELLS[group][groupSizes[group]++] = id;
+            }
+        }
+        for (int id=0; id<MAX_CELLS; id++) {
+            int count = 0;
+            for (int other=0; other<MAX_CELLS; other++) {
+                if (other != id && sharesGroup(id, other)) {
+                    PEERS[id][count++] = other;
+                }
+            }
+        }
+        for (int mask=0; mask<=ALL_VALUES; mask++) {
+            BIT_COUNT[mask] = (byte)Integer.bitCount(mask);
+        }
+    }
+
+    private static boolean sharesGroup(int a, int b) {
+        int[] ga = CELL_GROUPS[a], gb = CELL_GROUPS[b];
+        return ga[0] == gb[0] || ga[1] == gb[1] || ga[2] == gb[2];
+    }
+
+    /**
+     * Returns the bit used to represent the given value in a mask.
+     */
+    public static int toBit(int value) {
+        return 1 << (value - 1);
+    }
+
+    /**
+     * Returns the value represented by the lowest bit set in the given mask.
+     */
+    public static int toValue(int mask) {
+        return Integer.numberOfTrailingZeros(mask) + 1;
+    }
+
+    private final byte[] values;
+    private final boolean[] locked;
+    private final short[] candidates;
+    private final byte[] candidateCounts;
+    private final short[] groupMasks;
+    private final byte[] groupFilledCounts;
+    // number of cells in each group holding each value, so duplicates can be cleared correctly
+    private final byte[] groupValueCounts;
+    private int filledCount;
+    // empty cells that have no candidates left
+    private int deadEndCount;
+    // values placed in a group that already holds them
+    private int duplicateCount;
+    private int[] trail;
+    private int trailSize;
+    private boolean trailing;
+    private ValueListener listener;
+    private CandidateIndex index;
+    // running totals for solver metrics
+    private long candidateUpdates, notifications;
+
+    public BitBoard() {
+        this.values = new byte[MAX_CELLS];
+        this.locked = new boolean[MAX_CELLS];
+        this.candidates = new short[MAX_CELLS];
+        this.candidateCounts = new byte[MAX_CELLS];
+        this.groupMasks = new short[MAX_GROUPS];
+        this.groupFilledCounts = new byte[MAX_GROUPS];
+        this.groupValueCounts = new byte[MAX_GROUPS * MAX_CELLS_IN_GROUP];
+        for (int id=0; id<MAX_CELLS; id++) {
+            candidates[id] = ALL_VALUES;
+            candidateCounts[id] = MAX_CELLS_IN_GROUP;
+        }
+        this.trail = new int[MAX_CELLS * MAX_PEERS];
+    }
+
+    /**
+     * Copies the values, locks and masks of another board.  The trail, listener and candidate
+     * index are not copied.
+     */
+    public BitBoard(BitBoard other) {
+        this.values = other.values.clone();
+        this.locked = other.locked.clone();
+        this.candidates = other.candidates.clone();
+        this.candidateCounts = other.candidateCounts.clone();
+        this.groupMasks = other.groupMasks.clone();
+        this.groupFilledCounts = other.groupFilledCounts.clone();
+        this.groupValueCounts = other.groupValueCounts.clone();
+        this.filledCount = other.filledCount;
+        this.deadEndCount = other.deadEndCount;
+        this.duplicateCount = other.duplicateCount;
+        this.trail = new int[MAX_CELLS * MAX_PEERS];
+    }
+
+    /**
+     * Overwrites this board with the values, locks and masks of another board, without
+     * allocating.  The trail is discarded, and the listener and candidate index are kept but
+     * not notified, so an attached index has to be rebuilt.
+     */
+    public void copyFrom(BitBoard other) {
+        System.arraycopy(other.values, 0, values, 0, MAX_CELLS);
+        System.arraycopy(other.locked, 0, locked, 0, MAX_CELLS);
+        System.arraycopy(other.candidates, 0, candidates, 0, MAX_CELLS);
+        System.arraycopy(other.candidateCounts, 0, candidateCounts, 0, MAX_CELLS);
+        System.arraycopy(other.groupMasks, 0, groupMasks, 0, MAX_GROUPS);
+        System.arraycopy(other.groupFilledCounts, 0, groupFilledCounts, 0, MAX_GROUPS);
+        System.arraycopy(other.groupValueCounts, 0, groupValueCounts, 0, groupValueCounts.length);
+        filledCount = other.filledCount;
+        deadEndCount = other.deadEndCount;
+        duplicateCount = other.duplicateCount;
+        clearTrail();
+    }
+
+    /**
+     * Sets the listener notified after each cell value changes, including the values cleared
+     * by undo().
+     */
+    public void setValueListener(ValueListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Attaches an index that is kept in step with the candidate counts of the empty cells, or
+     * detaches the current index when null.
+     */
+    public void setCandidateIndex(CandidateIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * The cell value between 1 and 9, or 0 when the cell is empty.
+     */
+    public int getValue(int id) {
+        return values[id];
+    }
+
+    public boolean isEmpty(int id) {
+        return values[id] == NO_VALUE;
+    }
+
+    public boolean isLocked(int id) {
+        return locked[id];
+    }
+
+    /**
+     * Returns the mask of values that can legally be placed in the cell.  Filled cells always
+     * return 0.
+     */
+    public int getCandidates(int id) {
+        return candidates[id];
+    }
+
+    /**
+     * Returns the number of values that can legally be placed in the cell.
+     */
+    public int getCandidateCount(int id) {
+        return candidateCounts[id];
+    }
+
+    /**
+     * Returns the mask of values used by the cells of a group.
+     */
+    public int getGroupMask(int group) {
+        return groupMasks[group];
+    }
+
+    /**
+     * Returns the number of cells in a group that do not have a value.
+     */
+    public int getGroupEmptyCount(int group) {
+        return MAX_CELLS_IN_GROUP - groupFilledCounts[group];
+    }
+
+    /**
+     * Returns the number of cells that have a value.
+     */
+    public int getFilledCount() {
+        return filledCount;
+    }
+
+    public void lock(int id) {
+        locked[id] = true;
+    }
+
+    public void unlock(int id) {
+        locked[id] = false;
+    }
+
+    /**
+     * Sets the cell value, where 0 clears the cell.  The candidate masks of the cell and
+     * all of its peers are brought up to date before returning.
+     */
+    public void set(int id, int value) {
+        if (locked[id]) {
+            throw new UnsupportedOperationException("Attempted to alter immutable cell value ["+values[id]+"]");
+        }
+        int old = values[id];
+        if (old == value) {
+            return;
+        }
+        if (old != NO_VALUE) {
+            if (trailing) {
+                throw new IllegalStateException("Attempted to clear cell ["+id+"] while recording the trail");
+            }
+            clear(id, old);
+        }
+        if (value != NO_VALUE) {
+            place(id, value);
+        }
+        if (listener != null) {
+            notifications++;
+            listener.onChange(id, old);
+        }
+    }
+
+    /**
+     * Starts recording changes, if not already recording, and returns the trail position that
+     * undo() can later return to.
+     */
+    public int mark() {
+        trailing = true;
+        return trailSize;
+    }
+
+    /**
+     * Reverts every change recorded since the given mark, most recent first.
+     */
+    public void undo(int mark) {
+        while (trailSize > mark) {
+            int entry = trail[--trailSize];
+            int id = (entry >>> 16) & 0xFF;
+            int mask = entry & 0xFFFF;
+            candidateUpdates++;
+            if ((entry >>> 30) == TRAIL_PEER) {
+                candidates[id] |= mask;
+                if (candidateCounts[id]++ == 0) {
+                    deadEndCount--;
+                }
+                if (index != null) {
+                    index.move(id, candidateCounts[id]);
+                }
+                continue;
+            }
+            int value = (entry >>> 24) & 0x3F;
+            values[id] = NO_VALUE;
+            filledCount--;
+            removeFromGroups(id, value);
+            candidates[id] = (short)mask;
+            candidateCounts[id] = BIT_COUNT[mask];
+            if (mask == 0) {
+                deadEndCount++;
+            }
+            if (index != null) {
+                index.add(id, candidateCounts[id]);
+            }
+            if (listener != null) {
+                notifications++;
+                listener.onChange(id, value);
+            }
+        }
+    }
+
+    /**
+     * Stops recording changes and discards the trail, keeping the current values.
+     */
+    public void clearTrail() {
+        trailing = false;
+        trailSize = 0;
+    }
+
+    /**
+     * Returns false if an empty cell exists with no candidate values.
+     */
+    public boolean isSolveable() {
+        return deadEndCount == 0;
+    }
+
+    /**
+     * Returns true if some group contains the same value more than once.
+     */
+    public boolean hasDuplicates() {
+        return duplicateCount > 0;
+    }
+
+    /**
+     * Returns true if every cell is filled and no group contains a duplicate value.
+     */
+    public boolean isSolved() {
+        return filledCount == MAX_CELLS && duplicateCount == 0;
+    }
+
+    private void place(int id, int value) {
+        int bit = toBit(value);
+        for (int peer: PEERS[id]) {
+            if ((candidates[peer] & bit) != 0) {
+                candidateUpdates++;
+                candidates[peer] &= ~bit;
+                if (--candidateCounts[peer] == 0) {
+                    deadEndCount++;
+                }
+                if (index != null) {
+                    index.move(peer, candidateCounts[peer]);
+                }
+                if (trailing) {
+                    record((TRAIL_PEER << 30) | (peer << 16) | bit);
+                }
+            }
+        }
+        if (trailing) {
+            record((TRAIL_PLACE << 30) | (value << 24) | (id << 16) | candidates[id]);
+        }
+        values[id] = (byte)value;
+        filledCount++;
+        addToGroups(id, value);
+        if (candidates[id] == 0) {
+            deadEndCount--;
+        }
+        candidates[id] = 0;
+        candidateCounts[id] = 0;
+        if (index != null) {
+            index.remove(id);
+        }
+    }
+
+    private void record(int entry) {
+        if (trailSize == trail.length) {
+            int[] t = new int[trail.length * 2];
+            System.arraycopy(trail, 0, t, 0, trailSize);
+            trail = t;
+        }
+        trail[trailSize++] = entry;
+    }
+
+    private void clear(int id, int value) {
+        int bit = toBit(value);
+        values[id] = NO_VALUE;
+        filledCount--;
+        removeFromGroups(id, value);
+        candidates[id] = (short)(ALL_VALUES & ~getUsedMask(id));
+        candidateCounts[id] = BIT_COUNT[candidates[id]];
+        candidateUpdates++;
+        if (candidates[id] == 0) {
+            deadEndCount++;
+        }
+        if (index != null) {
+            index.add(id, candidateCounts[id]);
+        }
+        for (int peer: PEERS[id]) {
+            if (values[peer] != NO_VALUE || (getUsedMask(peer) & bit) != 0) {
+                continue;
+            }
+            if (candidateCounts[peer]++ == 0) {
+                deadEndCount--;
+            }
+            candidateUpdates++;
+            candidates[peer] |= bit;
+            if (index != null) {
+                index.move(peer, candidateCounts[peer]);
+            }
+        }
+    }
+
+    private int getUsedMask(int id) {
+        int[] groups = CELL_GROUPS[id];
+        return groupMasks[groups[0]] | groupMasks[groups[1]] | groupMasks[groups[2]];
+    }
+
+    private void addToGroups(int id, int value) {
+        int bit = toBit(value);
+        for (int group: CELL_GROUPS[id]) {
+            groupFilledCounts[group]++;
+            if (++groupValueCounts[(group * MAX_CELLS_IN_GROUP) + value - 1] > 1) {
+                duplicateCount++;
+            }
+            groupMasks[group] |= bit;
+        }
+    }
+
+    private void removeFromGroups(int id, int value) {
+        int bit = toBit(value);
+        for (int group: CELL_GROUPS[id]) {
+            groupFilledCounts[group]--;
+            int count = --groupValueCounts[(group * MAX_CELLS_IN_GROUP) + value - 1];
+            if (count > 0) {
+                duplicateCount--;
+            } else {
+                groupMasks[group] &= ~bit;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of candidate masks changed since the board was built, including the
+     * masks restored by undo().
+     */
+    public long getCandidateUpdateCount() {
+        return candidateUpdates;
+    }
+
+    /**
+     * Returns the number of value changes passed on to the listener since the board was built.
+     */
+    public long getNotificationCount() {
+        return notifications;
+    }
+
+    /**
+     * Notified after a cell value changes.
+     */
+    public interface ValueListener {
+        void onChange(int id, int oldValue);
+    }
+}
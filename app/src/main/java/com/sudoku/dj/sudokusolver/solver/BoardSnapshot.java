@@ -0,0 +1,42 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+/**
+ * An immutable copy of the cell values and locks of a {@link CellModel}, for reading the board
+ * from another thread while it changes.  The version counts the model's changes, so two
+ * snapshots with the same version hold the same board.
+ */
+public final class BoardSnapshot {
+    private final long version;
+    private final byte[] values;
+    // cells 0 to 63 in the low word, 64 to 80 in the high word
+    private final long lockedLow, lockedHigh;
+    private final boolean solved;
+
+    BoardSnapshot(long version, byte[] values, long lockedLow, long lockedHigh, boolean solved) {
+        this.version = version;
+        this.values = values;
+        this.lockedLow = lockedLow;
+        this.lockedHigh = lockedHigh;
+        this.solved = solved;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the value of the cell, or 0 when it is empty.
+     */
+    public int getValue(int id) {
+        return values[id];
+    }
+
+    public boolean isLocked(int id) {
+        long word = id < Long.SIZE ? lockedLow : lockedHigh;
+        return (word & (1L << (id & (Long.SIZE - 1)))) != 0;
+    }
+
+    public boolean isSolved() {
+        return solved;
+    }
+}
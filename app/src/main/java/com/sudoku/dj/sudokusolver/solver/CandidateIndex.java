@@ -0,0 +1,96 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+/**
+ * Keeps the empty cells of a {@link BitBoard} in buckets by candidate count, so the cell with
+ * the minimum remaining values can be found without scanning the board.  Each bucket is a doubly
+ * linked list held in flat arrays, so moving a cell between buckets is constant time.
+ *
+ * Once attached to a board with {@link BitBoard#setCandidateIndex(CandidateIndex)}, the board
+ * moves cells between buckets whenever their candidate counts change, including during undo.
+ */
+public final class CandidateIndex {
+    private static final int NONE = -1;
+    private static final int BUCKETS = BitBoard.MAX_CELLS_IN_GROUP + 1;
+
+    private final int[] next = new int[BitBoard.MAX_CELLS];
+    private final int[] prev = new int[BitBoard.MAX_CELLS];
+    private final int[] bucketOf = new int[BitBoard.MAX_CELLS];
+    private final int[] heads = new int[BUCKETS];
+
+    /**
+     * Builds an index of the empty cells of the board, without attaching to it.
+     */
+    public CandidateIndex(BitBoard board) {
+        rebuild(board);
+    }
+
+    /**
+     * Refiles every cell from the current candidate counts of the board, for when the board was
+     * changed without the index attached.
+     */
+    public void rebuild(BitBoard board) {
+        for (int b=0; b<BUCKETS; b++) {
+            heads[b] = NONE;
+        }
+        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+            bucketOf[id] = NONE;
+            if (board.isEmpty(id)) {
+                add(id, board.getCandidateCount(id));
+            }
+        }
+    }
+
+    /**
+     * Returns an empty cell with the fewest candidates, or -1 when every cell is filled.
+     */
+    public int getFirst() {
+        for (int b=0; b<BUCKETS; b++) {
+            if (heads[b] != NONE) {
+                return heads[b];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns the number of candidates the cell is filed under, or -1 if the cell is filled.
+     */
+    public int getBucket(int id) {
+        return bucketOf[id];
+    }
+
+    void add(int id, int count) {
+        int head = heads[count];
+        next[id] = head;
+        prev[id] = NONE;
+        if (head != NONE) {
+            prev[head] = id;
+        }
+        heads[count] = id;
+        bucketOf[id] = count;
+    }
+
+    void remove(int id) {
+        int b = bucketOf[id];
+        if (b == NONE) {
+            return;
+        }
+        if (prev[id] != NONE) {
+            next[prev[id]] = next[id];
+        } else {
+            heads[b] = next[id];
+        }
+        if (next[id] != NONE) {
+            prev[next[id]] = prev[id];
+        }
+        bucketOf[id] = NONE;
+    }
+
+    void move(int id, int count) {
+        if (bucketOf[id] == count) {
+            return;
+        }
+        remove(id);
+        add(id, count);
+    }
+}
@@ -43,6 +43,17 @@ public interface Cell {
      */
     Set<Integer> getAvailableValues();
 
+    /**
+     * Returns the available values as a bit mask, where bit (n - 1) is set when the value n
+     * is available.  This is the allocation free form of getAvailableValues().
+     */
+    int getAvailableMask();
+
+    /**
+     * Returns the number of available values, which is the size of getAvailableValues().
+     */
+    int getAvailableCount();
+
     /**
      * Returns true if this cell is locked.
      * @return
@@ -0,0 +1,81 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects which cells of a {@link CellModel} changed, for a consumer that reads them at its
+ * own pace.  Changes to the same cell are merged into one bit, so the tracker never grows, and
+ * marking a cell is a compare-and-set that never blocks or allocates.
+ *
+ * The first change after a drain calls the tracker's signal on the thread that made it, so a
+ * consumer can schedule a drain rather than poll.  The signal must return quickly, such as by
+ * posting to a handler.
+ */
+public class CellChangeTracker {
+    private static final long HIGH_MASK = (1L << (CellModel.MAX_CELLS - Long.SIZE)) - 1;
+
+    // cells 0 to 63 in the low word, 64 to 80 in the high word
+    private final AtomicLong low = new AtomicLong();
+    private final AtomicLong high = new AtomicLong();
+    private final AtomicBoolean signalled = new AtomicBoolean();
+    private final Runnable signal;
+
+    public CellChangeTracker(Runnable signal) {
+        this.signal = signal;
+    }
+
+    void mark(int id) {
+        if (id < Long.SIZE) {
+            mark(1L << id, 0);
+        } else {
+            mark(0, 1L << (id - Long.SIZE));
+        }
+    }
+
+    /**
+     * Marks the cells of both words, as gathered by a quiet model between checkpoints.
+     */
+    void mark(long lowBits, long highBits) {
+        set(low, lowBits);
+        set(high, highBits);
+        if (signal != null && signalled.compareAndSet(false, true)) {
+            signal.run();
+        }
+    }
+
+    /**
+     * Marks every cell, so the next drain returns the whole board.
+     */
+    public void markAll() {
+        mark(-1L, HIGH_MASK);
+    }
+
+    private static void set(AtomicLong word, long bits) {
+        long current = word.get();
+        while ((current & bits) != bits && !word.compareAndSet(current, current | bits)) {
+            current = word.get();
+        }
+    }
+
+    /**
+     * Takes the changed cells, writing their IDs into the array in order, and returns how many
+     * there were.
+     * @param ids An array of at least {@link CellModel#MAX_CELLS}.
+     */
+    public int drain(int[] ids) {
+        // cleared before the bits are taken, so a change made during the drain signals again
+        // rather than being lost
+        signalled.set(false);
+        int count = take(low.getAndSet(0), 0, ids, 0);
+        return take(high.getAndSet(0), Long.SIZE, ids, count);
+    }
+
+    private static int take(long bits, int firstID, int[] ids, int count) {
+        while (bits != 0) {
+            ids[count++] = firstID + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+        }
+        return count;
+    }
+}
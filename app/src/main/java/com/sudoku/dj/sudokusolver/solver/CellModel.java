@@ -1,17 +1,21 @@
 package com.sudoku.dj.sudokusolver.solver;
 
-import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Set;
 import java.util.HashSet;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * The memory representation of the Sudoku board.
+ * The memory representation of the Sudoku board.  Cell values and available values are held
+ * in a {@link BitBoard}, and the cells and groups returned here are views over that board.
+ *
+ * The model is changed by one thread at a time.  Other threads read it through
+ * {@link #getSnapshot()}, a copy published by the changing thread.  A copy is only made while
+ * someone is reading: at every change while the model has trackers, and at every checkpoint in
+ * quiet mode.  A model nobody watches changes without allocating.
  */
 public class CellModel {
 
@@ -21,7 +25,25 @@ public class CellModel {
     public static final int MAX_CELLS_IN_CUBE = Double.valueOf(Math.sqrt(MAX_CELLS_IN_GROUP)).intValue();
     
     private static final int NO_VALUE = 0;
-    private static final int ALL_VALUES_BYTES = new Double(Math.pow(2, MAX_CELLS_IN_GROUP)).intValue() - 1;
+    private static final int QUIET_CHECKPOINT_CHANGES = 4096;
+    private static final CellChangeTracker[] NO_TRACKERS = new CellChangeTracker[0];
+
+    // one shared, immutable set for every possible candidate mask, so that reading the
+    // available values of a cell never allocates
+    private static final List<Set<Integer>> AVAILABLE_SETS = buildAvailableSets();
+
+    private static List<Set<Integer>> buildAvailableSets() {
+        List<Set<Integer>> sets = new ArrayList<>(BitBoard.ALL_VALUES + 1);
+        for (int mask=0; mask<=BitBoard.ALL_VALUES; mask++) {
+            Set<Integer> available = new HashSet<>();
+            for (int i=0; i<MAX_CELLS_IN_GROUP; i++) {
+                if ((mask & (1 << i)) != 0)
+                    available.add(i+1);
+            }
+            sets.add(Collections.unmodifiableSet(available));
+        }
+        return Collections.unmodifiableList(sets);
+    }
 
     private static List<Integer> buildEmptyCellModel() {
         List<Integer> list = new ArrayList<>(MAX_CELLS);
@@ -32,9 +54,20 @@ public class CellModel {
         return list;
     }
 
+    private final BitBoard board;
     private final List<CellImpl> cells;
     private final List<GroupImpl> horizontals, verticals, cubes;
     private final List<ChangeListener> listeners;
+    // replaced rather than changed, so publishing can walk it without a lock or an iterator
+    private volatile CellChangeTracker[] trackers = NO_TRACKERS;
+    private volatile BoardSnapshot snapshot;
+    // set when a change was not published because the model had no trackers
+    private volatile boolean stale;
+    // only touched by the thread changing the model
+    private boolean quiet;
+    private long quietLow, quietHigh;
+    private int quietChanges;
+    private long version;
 
     public CellModel() {
         this(buildEmptyCellModel());
@@ -44,12 +77,150 @@ public class CellModel {
         if (initial == null || initial.size() != MAX_CELLS) {
             throw new RuntimeException("Invalid puzzle size");
         }
+        this.board = new BitBoard();
         this.cells = Collections.unmodifiableList(buildCells(initial));
         this.horizontals = Collections.unmodifiableList(buildGroupsList(new HorizontalGroupBuilder()));
         this.verticals = Collections.unmodifiableList(buildGroupsList(new VerticalGroupBuilder()));
         this.cubes = Collections.unmodifiableList(buildGroupsList(new CubeGroupBuilder()));
 
-        this.listeners = new ArrayList<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.board.setValueListener(new BitBoard.ValueListener() {
+            @Override
+            public void onChange(int id, int oldValue) {
+                if (quiet) {
+                    collectQuietChange(id);
+                } else {
+                    publish(id, oldValue);
+                }
+            }
+        });
+        this.snapshot = buildSnapshot();
+    }
+
+    private void publish(int id, int oldValue) {
+        version++;
+        CellChangeTracker[] current = trackers;
+        if (current.length > 0) {
+            // published before the trackers are marked, so a drain always finds it
+            publishSnapshot();
+            for (int i=0; i<current.length; i++) {
+                current[i].mark(id);
+            }
+        } else if (!stale) {
+            stale = true;
+        }
+        if (!listeners.isEmpty()) {
+            Cell cell = cells.get(id);
+            for (ChangeListener listener: listeners) {
+                listener.onChange(cell, oldValue);
+            }
+        }
+    }
+
+    private void collectQuietChange(int id) {
+        version++;
+        if (id < Long.SIZE) {
+            quietLow |= 1L << id;
+        } else {
+            quietHigh |= 1L << (id - Long.SIZE);
+        }
+        if (++quietChanges >= QUIET_CHECKPOINT_CHANGES) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Turns quiet mode on or off.  While quiet, listeners are not called and trackers only
+     * receive checkpoints: the cells changed since the last checkpoint, merged, every few
+     * thousand changes.  Turning quiet mode off publishes a last checkpoint.
+     *
+     * Meant for a solver, which changes cells far faster than anyone can watch them; it must be
+     * set by the thread changing the model.
+     */
+    public void setQuiet(boolean quiet) {
+        if (this.quiet && !quiet) {
+            checkpoint();
+        } else if (!this.quiet && quiet && stale) {
+            // so a tracker added during the quiet changes finds nothing left to build
+            publishSnapshot();
+        }
+        this.quiet = quiet;
+    }
+
+    /**
+     * Publishes the board as changed in quiet mode since the last checkpoint, and passes the
+     * changed cells on to the trackers.
+     */
+    public void checkpoint() {
+        if ((quietLow | quietHigh) != 0) {
+            publishSnapshot();
+            CellChangeTracker[] current = trackers;
+            for (int i=0; i<current.length; i++) {
+                current[i].mark(quietLow, quietHigh);
+            }
+        }
+        quietLow = quietHigh = 0;
+        quietChanges = 0;
+    }
+
+    /**
+     * Adds a tracker that collects changed cells for a consumer to drain at its own pace.  If
+     * changes were made while the model had no trackers, the snapshot is brought up to date on
+     * the calling thread, so the first tracker should be added while the model is not changing
+     * or is quiet.
+     */
+    public ChangeListenerRegistration addTracker(final CellChangeTracker tracker) {
+        synchronized (this) {
+            if (stale) {
+                publishSnapshot();
+            }
+            CellChangeTracker[] added = Arrays.copyOf(trackers, trackers.length + 1);
+            added[trackers.length] = tracker;
+            trackers = added;
+        }
+        return new ChangeListenerRegistration() {
+            @Override
+            public void unregister() {
+                removeTracker(tracker);
+            }
+        };
+    }
+
+    /**
+     * Returns the board as last published: the copy made at the last change while the model
+     * had trackers, or at the last checkpoint in quiet mode.  It is never read from the live
+     * board, so it is safe to call from any thread and costs nothing.  A reader that needs
+     * every change should hold a tracker.
+     */
+    public BoardSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private void publishSnapshot() {
+        snapshot = buildSnapshot();
+        stale = false;
+    }
+
+    private BoardSnapshot buildSnapshot() {
+        byte[] values = new byte[MAX_CELLS];
+        long lockedLow = 0, lockedHigh = 0;
+        for (int id=0; id<MAX_CELLS; id++) {
+            values[id] = (byte)board.getValue(id);
+            if (cells.get(id).isLocked()) {
+                if (id < Long.SIZE) {
+                    lockedLow |= 1L << id;
+                } else {
+                    lockedHigh |= 1L << (id - Long.SIZE);
+                }
+            }
+        }
+        return new BoardSnapshot(version, values, lockedLow, lockedHigh, board.isSolved());
+    }
+
+    private synchronized void removeTracker(CellChangeTracker tracker) {
+        List<CellChangeTracker> remaining = new ArrayList<>(Arrays.asList(trackers));
+        remaining.remove(tracker);
+        trackers = remaining.toArray(NO_TRACKERS);
     }
 
     public ChangeListenerRegistration addListener(final ChangeListener listener) {
@@ -62,6 +233,13 @@ public class CellModel {
         };
     }
 
+    /**
+     * Returns the primitive board backing this model.
+     */
+    BitBoard getBoard() {
+        return board;
+    }
+
     /**
      * Gets the horizontal group.
      */
@@ -127,15 +305,29 @@ public class CellModel {
      * cell value affects all other cells in the shared groups.
      */
     public void setValue(Cell cell, Integer value) {
-        int oldValue = cell.getValue();
-        ((CellImpl)cell).setValue(value);
-        ((CellImpl)cell).resetAvailableCache();
-        ((GroupImpl)cell.getHorizontalGroup()).resetAvailableCache();
-        ((GroupImpl)cell.getVerticalGroup()).resetAvailableCache();
-        ((GroupImpl)cell.getCubeGroup()).resetAvailableCache();
-        for (ChangeListener listener: listeners) {
-            listener.onChange(cell, oldValue);
-        }
+        board.set(cell.getID(), value);
+    }
+
+    /**
+     * Starts recording value changes so they can be undone, and returns the position that
+     * undo() can return to.  While recording, cells can be filled but not cleared.
+     */
+    int mark() {
+        return board.mark();
+    }
+
+    /**
+     * Clears every value set since the given mark, notifying listeners of each cleared cell.
+     */
+    void undo(int mark) {
+        board.undo(mark);
+    }
+
+    /**
+     * Stops recording value changes, keeping the current values.
+     */
+    void clearTrail() {
+        board.clearTrail();
     }
 
     public Cell getCell(int id) {
@@ -175,14 +367,7 @@ public class CellModel {
      * blank cell can be found that has no available values.
      */
     public boolean isSolveable() {
-        for (CellImpl cell: cells) {
-            if (!cell.isLocked() &&
-                cell.isEmpty() &&
-                cell.getAvailableValues().size() == 0) {
-                return false;
-            }
-        }
-        return true;
+        return board.isSolveable();
     }
 
     /**
@@ -190,11 +375,7 @@ public class CellModel {
      * @return
      */
     public boolean isSolved() {
-        for (CellImpl cell: cells) {
-            if (cell.isEmpty() || cell.getAvailableValues().size() > 0)
-                return false;
-        }
-        return true;
+        return board.isSolved();
     }
 
     /**
@@ -216,9 +397,7 @@ public class CellModel {
         for (CellImpl cell: cells) {
             if (cell.getValue() != NO_VALUE) {
                 cell.lockCell();
-                for (ChangeListener listener: listeners) {
-                    listener.onChange(cell, NO_VALUE);
-                }
+                publish(cell.getID(), NO_VALUE);
             }
         }
     }
@@ -227,7 +406,11 @@ public class CellModel {
         List<CellImpl> t = new ArrayList<>(MAX_CELLS);
         int id = 0;
         for (Integer value: initial) {
-            t.add(new CellImpl(id++, value));
+            if (value > NO_VALUE) {
+                board.set(id, value);
+                board.lock(id);
+            }
+            t.add(new CellImpl(id++));
         }
         return t;
     }
@@ -259,7 +442,7 @@ public class CellModel {
                 int index = hIndex + i;
                 group.add(cells.get(index));
             }
-            return new GroupImpl(groupID, group);
+            return new GroupImpl(BitBoard.HORIZONTAL_OFFSET + groupID, groupID, group);
         }
     }
 
@@ -272,7 +455,7 @@ public class CellModel {
                 int index = (MAX_CELLS_IN_GROUP * i) + groupID;
                 group.add(cells.get(index));
             }
-            return new GroupImpl(groupID, group);
+            return new GroupImpl(BitBoard.VERTICAL_OFFSET + groupID, groupID, group);
         }
     }
 
@@ -291,61 +474,36 @@ public class CellModel {
                     group.add(cells.get(index));
                 }
             }
-            return new GroupImpl(groupID, group);
+            return new GroupImpl(BitBoard.CUBE_OFFSET + groupID, groupID, group);
         }
     }
 
     private class CellImpl implements Cell {
         private final int id, horizontalID, verticalID, cubeID;
-        private AtomicBoolean isImmutable;
-        private AtomicInteger value;
-        private Set<Integer> availableCache;
 
-        public CellImpl(int id, int value) {
+        public CellImpl(int id) {
             this.id = id;
-            this.value = new AtomicInteger(value);
-            this.isImmutable = new AtomicBoolean(value > NO_VALUE);
             this.horizontalID = id / MAX_CELLS_IN_GROUP;
             this.verticalID = id % MAX_CELLS_IN_GROUP;
             this.cubeID = ((horizontalID / MAX_CELLS_IN_CUBE) * MAX_CELLS_IN_CUBE) + (verticalID / MAX_CELLS_IN_CUBE);
         }
 
         public void lockCell() {
-            isImmutable.set(true);
+            board.lock(id);
         }
 
         public void unlockCell() {
-            isImmutable.set(false);
-        }
-
-        /**
-         * Sets the cell value if the cell can be modified.
-         */
-        public void setValue(int value) {
-            if (this.isImmutable.get()) {
-                throw new UnsupportedOperationException("Attempted to alter immutable cell value ["+this.value+"]");
-            }
-            if (value == NO_VALUE) {
-                this.value.set(NO_VALUE);
-                return;
-            }
-            int bytes = new Double(Math.pow(2, value - 1)).intValue();
-            this.value.set(bytes);
+            board.unlock(id);
         }
 
         @Override
         public boolean isLocked() {
-            return isImmutable.get();
+            return board.isLocked(id);
         }
 
         @Override
         public int getValue() {
-            int v = value.get();
-            return (v == NO_VALUE) ? NO_VALUE : Math.round((float)(Math.log(v) / Math.log(2))) + 1;
-        }
-
-        public int getRawValue() {
-            return value.get();
+            return board.getValue(id);
         }
 
         @Override
@@ -370,45 +528,31 @@ public class CellModel {
 
         @Override
         public boolean isEmpty() {
-            return value.get() == NO_VALUE;
+            return board.isEmpty(id);
         }
 
         @Override
         public Set<Integer> getAvailableValues() {
-            if (isImmutable.get())
-                return Collections.emptySet();
-
-            if (availableCache != null)
-                return availableCache;
-
-            int h = ((GroupImpl)getHorizontalGroup()).getAvailableValues();
-            int v = ((GroupImpl)getVerticalGroup()).getAvailableValues();
-            int c = ((GroupImpl)getCubeGroup()).getAvailableValues();
-            int a = h & v & c;
-
-            Set<Integer> available = new HashSet<>();
-            for (int i=0; i<MAX_CELLS_IN_GROUP; i++) {
-                int value = new Double(Math.pow(2, i)).intValue();
-                int t = a & value;
-                if (t > 0)
-                    available.add((i+1));
-            }
+            return AVAILABLE_SETS.get(getAvailableMask());
+        }
 
-            availableCache = Collections.unmodifiableSet(available);
-            return availableCache;
+        @Override
+        public int getAvailableMask() {
+            return board.isLocked(id) ? 0 : board.getCandidates(id);
         }
 
-        public void resetAvailableCache() {
-            availableCache = null;
+        @Override
+        public int getAvailableCount() {
+            return board.isLocked(id) ? 0 : board.getCandidateCount(id);
         }
     }
 
     private class GroupImpl implements Group {
-        private final int id;
+        private final int index, id;
         private final List<Cell> cells;
-        private Integer availableCache;
 
-        public GroupImpl(int id, List<Cell> cells) {
+        public GroupImpl(int index, int id, List<Cell> cells) {
+            this.index = index;
             this.id = id;
             this.cells = Collections.unmodifiableList(cells);
         }
@@ -423,23 +567,14 @@ public class CellModel {
             return cells;
         }
 
-        public int getAvailableValues() {
-            if (availableCache != null)
-                return availableCache;
-
-            int row = 0;
-            for (Cell cell: cells) {
-                int value = ((CellImpl)cell).getRawValue();
-                row += value;
-            }
-            availableCache = ALL_VALUES_BYTES ^ row;
-            return availableCache;
+        @Override
+        public int getUsedValuesMask() {
+            return board.getGroupMask(index);
         }
 
-        public void resetAvailableCache() {
-            availableCache = null;
-            for (Cell cell: cells)
-                ((CellImpl)cell).resetAvailableCache();
+        @Override
+        public int getEmptyCellCount() {
+            return board.getGroupEmptyCount(index);
         }
     }
 
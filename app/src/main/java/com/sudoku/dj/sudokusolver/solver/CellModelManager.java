@@ -1,16 +1,20 @@
 package com.sudoku.dj.sudokusolver.solver;
 
 import com.sudoku.dj.sudokusolver.MainActivity;
-import com.sudoku.dj.sudokusolver.tasks.BackgroundTaskManager;
 import com.sudoku.dj.sudokusolver.tasks.MaskBoardGeneratorTask;
+import com.sudoku.dj.sudokusolver.tasks.PuzzlePool;
+import com.sudoku.dj.sudokusolver.tasks.StoredBoardTask;
+import com.sudoku.dj.sudokusolver.tasks.TaskScheduler;
 
+import java.util.List;
 import java.util.Random;
 
 public class CellModelManager {
     private static CellModel cellModel;
 
     /**
-     * Instantiates the global cell model
+     * Instantiates the global cell model with a new board.  A board ready in the puzzle pool is
+     * loaded right away; otherwise the progress screen is shown while a board is generated.
      * @return
      */
     public static CellModel buildNewBoard(MainActivity activity) {
@@ -19,13 +23,46 @@ public class CellModelManager {
         } else {
             cellModel.resetAllCells();
         }
+        PuzzlePool pool = PuzzlePool.getInstance();
+        pool.start(activity);
+        List<Integer> board = pool.poll();
+        if (board != null) {
+            loadBoard(board);
+            return cellModel;
+        }
+
+        activity.showProgressFragment();
         Random r = new Random(System.currentTimeMillis());
-        int filledCells = r.nextInt(15) + 17;
+        int filledCells = MaskBoardGeneratorTask.randomFilledCells(r);
         MaskBoardGeneratorTask task = new MaskBoardGeneratorTask(filledCells, activity);
-        BackgroundTaskManager.getInstance().runTask(task, cellModel);
+        TaskScheduler.getInstance().submit(TaskScheduler.Kind.NEW_BOARD, task, cellModel);
         return cellModel;
     }
 
+    /**
+     * Instantiates the global cell model with a stored puzzle of the given level, showing the
+     * progress screen while it is read.
+     */
+    public static CellModel buildNewBoard(MainActivity activity, DifficultyGrader.Level level) {
+        if (cellModel == null) {
+            cellModel = new CellModel();
+        }
+        activity.showProgressFragment();
+        TaskScheduler.getInstance().submit(TaskScheduler.Kind.NEW_BOARD, new StoredBoardTask(level, activity), cellModel);
+        return cellModel;
+    }
+
+    private static void loadBoard(List<Integer> board) {
+        for (int i=0; i<CellModel.MAX_CELLS; i++) {
+            int value = board.get(i);
+            if (value > 0) {
+                cellModel.setValue(cellModel.getCell(i), value);
+            }
+        }
+        cellModel.lockFilledCells();
+        CurrentSolverStatsManager.getInstance().clearAllStats();
+    }
+
     /**
      * Returns the current state of the global cell model. This will throw an exception
      * if buildNewBoard() is not called first.
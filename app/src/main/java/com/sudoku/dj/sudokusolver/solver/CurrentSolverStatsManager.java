@@ -2,16 +2,23 @@ package com.sudoku.dj.sudokusolver.solver;
 
 import com.sudoku.dj.sudokusolver.tasks.SolveTask;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Keeps running totals of the solves of the current board, along with histograms of their
+ * times and steps for percentiles.  Memory stays the same however many solves are added, and
+ * adding never takes a lock; clearing swaps in new totals, so a solve added at the same time
+ * lands in either the old or the new ones.
+ */
 public class CurrentSolverStatsManager {
     private static CurrentSolverStatsManager instance;
 
-    private final List<SolveTask.SolveStats> allStats;
+    private final AtomicReference<Totals> totals;
 
     private CurrentSolverStatsManager() {
-        this.allStats = new ArrayList<>();
+        this.totals = new AtomicReference<>(new Totals());
     }
 
     public static CurrentSolverStatsManager getInstance() {
@@ -21,28 +28,88 @@ public class CurrentSolverStatsManager {
         return instance;
     }
 
-    public synchronized void clearAllStats() {
-        allStats.clear();
+    public void clearAllStats() {
+        totals.set(new Totals());
     }
 
-    public synchronized void addStats(SolveTask.SolveStats stats) {
-        allStats.add(stats);
+    public void addStats(SolveTask.SolveStats stats) {
+        totals.get().add(stats);
     }
 
-    public synchronized SolveTask.SolveStats getSolveStats() {
-        return new CumulativeSolveStats(allStats);
+    public StatsSnapshot getSolveStats() {
+        return totals.get().snapshot();
     }
 
-    private static class CumulativeSolveStats implements SolveTask.SolveStats {
-        private int attempts, steps;
-        private long elapsed;
+    private static class Totals {
+        private final AtomicLong solves = new AtomicLong();
+        private final AtomicLong attempts = new AtomicLong();
+        private final AtomicLong steps = new AtomicLong();
+        private final AtomicLong elapsedNanos = new AtomicLong();
+        private final LogHistogram elapsedHistogram = new LogHistogram();
+        private final LogHistogram stepHistogram = new LogHistogram();
+        private final AtomicReference<SolverMetrics> metrics = new AtomicReference<>(new SolverMetrics());
 
-        public CumulativeSolveStats(List<SolveTask.SolveStats> solveStatsList) {
-            for (SolveTask.SolveStats s: solveStatsList) {
-                attempts += s.getAttempts();
-                steps += s.getSteps();
-                elapsed += s.getElapsedTime();
+        public void add(SolveTask.SolveStats stats) {
+            long nanos;
+            if (stats instanceof SolveTask.DetailedSolveStats) {
+                SolveTask.DetailedSolveStats detailed = (SolveTask.DetailedSolveStats)stats;
+                nanos = detailed.getElapsedNanos();
+                addMetrics(detailed.getMetrics());
+            } else {
+                nanos = TimeUnit.MILLISECONDS.toNanos(stats.getElapsedTime());
             }
+            solves.incrementAndGet();
+            attempts.addAndGet(stats.getAttempts());
+            steps.addAndGet(stats.getSteps());
+            elapsedNanos.addAndGet(nanos);
+            elapsedHistogram.record(nanos);
+            stepHistogram.record(stats.getSteps());
+        }
+
+        // the published metrics are never changed, so a merge builds new ones and swaps them in
+        private void addMetrics(SolverMetrics added) {
+            SolverMetrics merged = new SolverMetrics();
+            SolverMetrics current;
+            do {
+                current = metrics.get();
+                merged.reset();
+                merged.add(current);
+                merged.add(added);
+            } while (!metrics.compareAndSet(current, merged));
+        }
+
+        public StatsSnapshot snapshot() {
+            SolverMetrics copy = new SolverMetrics();
+            copy.add(metrics.get());
+            return new StatsSnapshot(solves.get(), (int)attempts.get(), (int)steps.get(),
+                    elapsedNanos.get(), copy, elapsedHistogram.snapshot(), stepHistogram.snapshot());
+        }
+    }
+
+    /**
+     * The totals of the solves of the current board at one point in time.  The elapsed time and
+     * steps are the sums over all the solves; the percentiles are of the single solves.
+     */
+    public static class StatsSnapshot implements SolveTask.DetailedSolveStats {
+        private final long solves;
+        private final int attempts, steps;
+        private final long elapsedNanos;
+        private final SolverMetrics metrics;
+        private final LogHistogram.Snapshot elapsedHistogram, stepHistogram;
+
+        private StatsSnapshot(long solves, int attempts, int steps, long elapsedNanos, SolverMetrics metrics,
+                              LogHistogram.Snapshot elapsedHistogram, LogHistogram.Snapshot stepHistogram) {
+            this.solves = solves;
+            this.attempts = attempts;
+            this.steps = steps;
+            this.elapsedNanos = elapsedNanos;
+            this.metrics = metrics;
+            this.elapsedHistogram = elapsedHistogram;
+            this.stepHistogram = stepHistogram;
+        }
+
+        public long getSolveCount() {
+            return solves;
         }
 
         @Override
@@ -57,7 +124,40 @@ public class CurrentSolverStatsManager {
 
         @Override
         public long getElapsedTime() {
-            return elapsed;
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        @Override
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public SolverMetrics getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * Returns the time within which the given percent of the solves finished, such as 50,
+         * 90 or 99, in nanoseconds.
+         */
+        public long getElapsedPercentileNanos(double percent) {
+            return elapsedHistogram.getPercentile(percent);
+        }
+
+        public long getMaxElapsedNanos() {
+            return elapsedHistogram.getMax();
+        }
+
+        /**
+         * Returns the number of steps within which the given percent of the solves finished.
+         */
+        public long getStepPercentile(double percent) {
+            return stepHistogram.getPercentile(percent);
+        }
+
+        public long getMaxSteps() {
+            return stepHistogram.getMax();
         }
     }
 }
@@ -0,0 +1,273 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An exact cover solver for Sudoku using Knuth's Algorithm X with dancing links.  The board is
+ * described as 324 constraints (each cell has a value, and each horizontal group, vertical group
+ * and cube has each value once) covered by 729 candidate rows (one per cell and value).  A
+ * solution is a set of 81 rows that covers every constraint exactly once.
+ *
+ * The links are held in flat int arrays, which are copied from a prebuilt template before each
+ * search, so a search does not allocate.  Unlike the randomized Solver, the search is complete:
+ * when it returns without finding a solution, the board has no solution.
+ */
+public final class DancingLinks {
+    private static final int CELLS = CellModel.MAX_CELLS;
+    private static final int SIZE = CellModel.MAX_CELLS_IN_GROUP;
+    private static final int CUBE = CellModel.MAX_CELLS_IN_CUBE;
+    private static final int COLUMNS = CELLS * 4;
+    private static final int ROWS = CELLS * SIZE;
+    private static final int ROOT = 0;
+    private static final int NODES = 1 + COLUMNS + (ROWS * 4);
+
+    private static final int[] TEMPLATE_LEFT = new int[NODES];
+    private static final int[] TEMPLATE_RIGHT = new int[NODES];
+    private static final int[] TEMPLATE_UP = new int[NODES];
+    private static final int[] TEMPLATE_DOWN = new int[NODES];
+    private static final int[] TEMPLATE_SIZE = new int[COLUMNS + 1];
+    private static final int[] COLUMN = new int[NODES];
+    private static final int[] ROW = new int[NODES];
+    // the first node of each candidate row, indexed by (cell * 9) + (value - 1)
+    private static final int[] ROW_START = new int[ROWS];
+
+    static {
+        for (int c=0; c<=COLUMNS; c++) {
+            TEMPLATE_LEFT[c] = (c == 0) ? COLUMNS : c - 1;
+            TEMPLATE_RIGHT[c] = (c == COLUMNS) ? 0 : c + 1;
+            TEMPLATE_UP[c] = c;
+            TEMPLATE_DOWN[c] = c;
+            COLUMN[c] = c;
+            ROW[c] = -1;
+        }
+        int node = COLUMNS + 1;
+        for (int cell=0; cell<CELLS; cell++) {
+            int h = cell / SIZE;
+            int v = cell % SIZE;
+            int cube = ((h / CUBE) * CUBE) + (v / CUBE);
+            for (int d=0; d<SIZE; d++) {
+                int row = (cell * SIZE) + d;
+                int[] columns = {
+                        1 + cell,
+                        1 + CELLS + (h * SIZE) + d,
+                        1 + (CELLS * 2) + (v * SIZE) + d,
+                        1 + (CELLS * 3) + (cube * SIZE) + d
+                };
+                ROW_START[row] = node;
+                for (int i=0; i<columns.length; i++) {
+                    int n = node + i;
+                    int col = columns[i];
+                    COLUMN[n] = col;
+                    ROW[n] = row;
+                    TEMPLATE_LEFT[n] = node + ((i + columns.length - 1) % columns.length);
+                    TEMPLATE_RIGHT[n] = node + ((i + 1) % columns.length);
+                    // append to the bottom of the column
+                    TEMPLATE_UP[n] = TEMPLATE_UP[col];
+                    TEMPLATE_DOWN[n] = col;
+                    TEMPLATE_DOWN[TEMPLATE_UP[col]] = n;
+                    TEMPLATE_UP[col] = n;
+                    TEMPLATE_SIZE[col]++;
+                }
+                node += columns.length;
+            }
+        }
+    }
+
+    private final int[] left = new int[NODES];
+    private final int[] right = new int[NODES];
+    private final int[] up = new int[NODES];
+    private final int[] down = new int[NODES];
+    private final int[] size = new int[COLUMNS + 1];
+    private final int[] chosen = new int[CELLS];
+    // scratch space for the shuffled row order at each depth of the search
+    private final int[][] order = new int[CELLS][SIZE];
+    private final Random random;
+
+    private int[] solution;
+    private int limit, found;
+    private long updates, maxUpdates;
+    private AtomicBoolean canCancel;
+    private SolverProgress progress;
+
+    /**
+     * Builds a solver that tries candidate rows in natural order, so every search of the same
+     * board visits the same nodes.
+     */
+    public DancingLinks() {
+        this(null);
+    }
+
+    /**
+     * Builds a solver that tries candidate rows in an order drawn from the given random, which
+     * is useful to produce different full boards from an empty one.
+     */
+    public DancingLinks(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Sets where the number of rows tried and the depth of the search are published as the
+     * search goes, or null for nowhere.
+     */
+    public void setProgress(SolverProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Searches for solutions of the given board, where each entry holds a value between 1 and
+     * 9 or 0 for an empty cell.  The first solution found is copied into the solution array.
+     * @return The number of solutions found, which stops at the limit.  A value of 0 returned
+     *         without cancellation proves the board has no solution.
+     */
+    public int solve(int[] board, int[] solution, int limit, AtomicBoolean canCancel) {
+        return solve(board, solution, limit, Long.MAX_VALUE, canCancel);
+    }
+
+    /**
+     * Searches like solve(), but gives up once the given number of candidate rows have been
+     * tried.  A value of 0 returned after reaching the maximum proves nothing.
+     */
+    public int solve(int[] board, int[] solution, int limit, long maxUpdates, AtomicBoolean canCancel) {
+        System.arraycopy(TEMPLATE_LEFT, 0, left, 0, NODES);
+        System.arraycopy(TEMPLATE_RIGHT, 0, right, 0, NODES);
+        System.arraycopy(TEMPLATE_UP, 0, up, 0, NODES);
+        System.arraycopy(TEMPLATE_DOWN, 0, down, 0, NODES);
+        System.arraycopy(TEMPLATE_SIZE, 0, size, 0, COLUMNS + 1);
+        this.solution = solution;
+        this.limit = limit;
+        this.found = 0;
+        this.updates = 0;
+        this.maxUpdates = maxUpdates;
+        this.canCancel = canCancel;
+
+        int depth = 0;
+        for (int cell=0; cell<CELLS; cell++) {
+            int value = board[cell];
+            if (value == 0) {
+                continue;
+            }
+            int start = ROW_START[(cell * SIZE) + value - 1];
+            // a given that conflicts with an earlier given means there is no solution
+            for (int n=start; ; ) {
+                if (isCovered(COLUMN[n])) {
+                    return 0;
+                }
+                n = right[n];
+                if (n == start)
+                    break;
+            }
+            selectRow(start);
+            chosen[depth++] = start;
+        }
+        search(depth);
+        return found;
+    }
+
+    /**
+     * Returns the number of candidate rows tried during the last search.
+     */
+    public long getUpdates() {
+        return updates;
+    }
+
+    /**
+     * Returns true when the last search gave up after trying the maximum number of rows.
+     */
+    public boolean hasReachedMaxUpdates() {
+        return updates >= maxUpdates;
+    }
+
+    private boolean isCovered(int col) {
+        return right[left[col]] != col;
+    }
+
+    private void search(int depth) {
+        if (right[ROOT] == ROOT) {
+            if (found++ == 0 && solution != null) {
+                for (int i=0; i<depth; i++) {
+                    int row = ROW[chosen[i]];
+                    solution[row / SIZE] = (row % SIZE) + 1;
+                }
+            }
+            return;
+        }
+
+        // choose the column with the fewest remaining rows
+        int col = right[ROOT];
+        for (int c=right[col]; c!=ROOT && size[col] > 1; c=right[c]) {
+            if (size[c] < size[col])
+                col = c;
+        }
+        if (size[col] == 0) {
+            return;
+        }
+
+        int[] rows = order[depth];
+        int count = 0;
+        for (int n=down[col]; n!=col; n=down[n]) {
+            rows[count++] = n;
+        }
+        if (random != null) {
+            for (int i=count-1; i>0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = rows[i];
+                rows[i] = rows[j];
+                rows[j] = t;
+            }
+        }
+
+        cover(col);
+        for (int i=0; i<count && found < limit && updates < maxUpdates; i++) {
+            if (canCancel != null && canCancel.get()) {
+                break;
+            }
+            int n = rows[i];
+            updates++;
+            if (progress != null) {
+                progress.update(updates, depth);
+            }
+            chosen[depth] = n;
+            for (int j=right[n]; j!=n; j=right[j]) {
+                cover(COLUMN[j]);
+            }
+            search(depth + 1);
+            for (int j=left[n]; j!=n; j=left[j]) {
+                uncover(COLUMN[j]);
+            }
+        }
+        uncover(col);
+    }
+
+    private void selectRow(int start) {
+        int n = start;
+        do {
+            cover(COLUMN[n]);
+            n = right[n];
+        } while (n != start);
+    }
+
+    private void cover(int col) {
+        right[left[col]] = right[col];
+        left[right[col]] = left[col];
+        for (int i=down[col]; i!=col; i=down[i]) {
+            for (int j=right[i]; j!=i; j=right[j]) {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                size[COLUMN[j]]--;
+            }
+        }
+    }
+
+    private void uncover(int col) {
+        for (int i=up[col]; i!=col; i=up[i]) {
+            for (int j=left[i]; j!=i; j=left[j]) {
+                size[COLUMN[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+        right[left[col]] = col;
+        left[right[col]] = col;
+    }
+}
@@ -0,0 +1,644 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+/**
+ * Grades a puzzle by solving it with logic only, the way a person would.  Techniques are tried
+ * in order of cost, and after every step the grader starts again from the cheapest technique,
+ * so a harder technique is only counted when nothing easier makes progress.  A step of singles
+ * places every single found in one pass over the board, and counts each of them.  The score is the
+ * weight of the hardest technique needed, or UNSOLVED_SCORE when the techniques run out before
+ * the puzzle is solved and a guess would be needed.  The level is the highest level of any
+ * technique needed, which is kept apart from the score since the weights do not rise with the
+ * levels: an X-wing weighs less than a hidden pair but is the harder level.
+ *
+ * The grader keeps its own values and candidate masks, since techniques beyond the singles
+ * remove candidates that no value has ruled out, so it works on a copy and never changes the
+ * board being graded.  Every technique works on the candidate masks of a group at a time:
+ * subsets and fish are found by testing precomputed combinations of group positions, whose
+ * union must hold exactly as many values or positions as the combination has members.  A
+ * grader keeps its arrays between calls, so grading does not allocate.  A grader is not thread
+ * safe.
+ */
+public class DifficultyGrader {
+    public static final int UNSOLVED_SCORE = 100;
+    private static final int SIZE = BitBoard.MAX_CELLS_IN_GROUP;
+    private static final int CUBE = CellModel.MAX_CELLS_IN_CUBE;
+    private static final int MAX_CHAIN_LENGTH = 8;
+
+    /**
+     * Levels of difficulty, each covering a range of techniques.  EXTREME puzzles cannot be
+     * solved by the grader's techniques alone.
+     */
+    public static enum Level { EASY, MEDIUM, HARD, EXPERT, EXTREME }
+
+    /**
+     * The techniques in the order they are tried.  Weights follow the usual ratings of the
+     * techniques, times ten.
+     */
+    public static enum Technique {
+        HIDDEN_SINGLE(15, Level.EASY),
+        NAKED_SINGLE(23, Level.EASY),
+        POINTING(26, Level.MEDIUM),
+        CLAIMING(28, Level.MEDIUM),
+        NAKED_PAIR(30, Level.MEDIUM),
+        X_WING(32, Level.HARD),
+        HIDDEN_PAIR(34, Level.MEDIUM),
+        NAKED_TRIPLE(36, Level.HARD),
+        SWORDFISH(38, Level.HARD),
+        HIDDEN_TRIPLE(40, Level.HARD),
+        XY_WING(42, Level.EXPERT),
+        NAKED_QUAD(50, Level.EXPERT),
+        JELLYFISH(52, Level.EXPERT),
+        HIDDEN_QUAD(54, Level.EXPERT),
+        XY_CHAIN(60, Level.EXPERT);
+
+        private final int weight;
+        private final Level level;
+
+        Technique(int weight, Level level) {
+            this.weight = weight;
+            this.level = level;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public Level getLevel() {
+            return level;
+        }
+    }
+
+    private static final Technique[] TECHNIQUES = Technique.values();
+    private static final int[] LINE_OFFSETS = { BitBoard.HORIZONTAL_OFFSET, BitBoard.VERTICAL_OFFSET };
+
+    /** The 9 bit masks with each number of bits set, used as combinations of positions. */
+    private static final int[][] COMBINATIONS = new int[SIZE + 1][];
+
+    /** Whether two cells share a group. */
+    private static final boolean[][] SEES = new boolean[BitBoard.MAX_CELLS][BitBoard.MAX_CELLS];
+
+    // every intersection of a line with a cube: the 3 shared cells, and the 6 cells of the line
+    // and of the cube outside it
+    private static final int INTERSECTIONS = SIZE * CUBE * 2;
+    private static final int[][] INTERSECTION_CELLS = new int[INTERSECTIONS][CUBE];
+    private static final int[][] LINE_REST = new int[INTERSECTIONS][SIZE - CUBE];
+    private static final int[][] CUBE_REST = new int[INTERSECTIONS][SIZE - CUBE];
+
+    static {
+        int[] sizes = new int[SIZE + 1];
+        for (int mask=0; mask<=BitBoard.ALL_VALUES; mask++) {
+            sizes[Integer.bitCount(mask)]++;
+        }
+        for (int k=0; k<=SIZE; k++) {
+            COMBINATIONS[k] = new int[sizes[k]];
+            sizes[k] = 0;
+        }
+        for (int mask=0; mask<=BitBoard.ALL_VALUES; mask++) {
+            int k = Integer.bitCount(mask);
+            COMBINATIONS[k][sizes[k]++] = mask;
+        }
+
+        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+            for (int peer: BitBoard.PEERS[id]) {
+                SEES[id][peer] = true;
+            }
+        }
+
+        int k = 0;
+        for (int cube=0; cube<SIZE; cube++) {
+            int[] cubeCells = BitBoard.GROUP_CELLS[BitBoard.CUBE_OFFSET + cube];
+            for (int i=0; i<CUBE * 2; i++) {
+                boolean horizontal = i < CUBE;
+                int line = horizontal
+                        ? ((cube / CUBE) * CUBE) + i
+                        : ((cube % CUBE) * CUBE) + (i - CUBE);
+                int group = (horizontal ? BitBoard.HORIZONTAL_OFFSET : BitBoard.VERTICAL_OFFSET) + line;
+                int shared = 0, lineRest = 0, cubeRest = 0;
+                for (int id: BitBoard.GROUP_CELLS[group]) {
+                    if (BitBoard.CELL_GROUPS[id][2] == BitBoard.CUBE_OFFSET + cube) {
+                        INTERSECTION_CELLS[k][shared++] = id;
+                    } else {
+                        LINE_REST[k][lineRest++] = id;
+                    }
+                }
+                for (int id: cubeCells) {
+                    if (BitBoard.CELL_GROUPS[id][horizontal ? 0 : 1] != group) {
+                        CUBE_REST[k][cubeRest++] = id;
+                    }
+                }
+                k++;
+            }
+        }
+    }
+
+    private final int[] modelValues = new int[BitBoard.MAX_CELLS];
+    private final int[] values = new int[BitBoard.MAX_CELLS];
+    private final int[] candidates = new int[BitBoard.MAX_CELLS];
+    private final int[] counts = new int[TECHNIQUES.length];
+    private final int[] positions = new int[SIZE];
+    private final boolean[] visited = new boolean[BitBoard.MAX_CELLS];
+    private int filled;
+    private boolean valid;
+    private Technique hardest;
+    private Level level;
+
+    /**
+     * Grades the current values of the model.
+     */
+    public int grade(CellModel model) {
+        BitBoard board = model.getBoard();
+        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+            modelValues[id] = board.getValue(id);
+        }
+        return grade(modelValues);
+    }
+
+    /**
+     * Grades the puzzle of 81 values, with 0 for the empty cells.
+     * @return The score, which is also available from getScore().
+     */
+    public int grade(int[] puzzle) {
+        for (int i=0; i<counts.length; i++) {
+            counts[i] = 0;
+        }
+        hardest = null;
+        level = Level.EASY;
+        load(puzzle);
+        while (valid && filled < BitBoard.MAX_CELLS) {
+            Technique found = null;
+            int steps = 0;
+            for (Technique technique: TECHNIQUES) {
+                steps = apply(technique);
+                if (steps > 0) {
+                    found = technique;
+                    break;
+                } else if (!valid) {
+                    break;
+                }
+            }
+            if (found == null) {
+                break;
+            }
+            counts[found.ordinal()] += steps;
+            if (hardest == null || found.weight > hardest.weight) {
+                hardest = found;
+            }
+            if (found.level.compareTo(level) > 0) {
+                level = found.level;
+            }
+        }
+        return getScore();
+    }
+
+    /**
+     * Returns the score of the last puzzle graded: the weight of the hardest technique needed,
+     * UNSOLVED_SCORE if the puzzle could not be solved by logic, or 0 if it was already solved.
+     */
+    public int getScore() {
+        if (!isSolved()) {
+            return UNSOLVED_SCORE;
+        }
+        return hardest == null ? 0 : hardest.weight;
+    }
+
+    /**
+     * Returns the highest level of the techniques needed by the last puzzle graded, or EXTREME
+     * if it could not be solved by logic.
+     */
+    public Level getLevel() {
+        if (!isSolved()) {
+            return Level.EXTREME;
+        }
+        return level;
+    }
+
+    /**
+     * Returns the hardest technique used, or null if none was needed.
+     */
+    public Technique getHardest() {
+        return hardest;
+    }
+
+    /**
+     * Returns the number of times the technique made progress in the last puzzle graded.
+     */
+    public int getCount(Technique technique) {
+        return counts[technique.ordinal()];
+    }
+
+    /**
+     * Returns true if the last puzzle graded was solved by the techniques alone.
+     */
+    public boolean isSolved() {
+        return valid && filled == BitBoard.MAX_CELLS;
+    }
+
+    /**
+     * Returns false if the last puzzle graded broke a rule, or led to a contradiction and so
+     * has no solution.
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    private void load(int[] puzzle) {
+        filled = 0;
+        valid = true;
+        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+            values[id] = 0;
+            candidates[id] = BitBoard.ALL_VALUES;
+        }
+        for (int id=0; id<BitBoard.MAX_CELLS && valid; id++) {
+            int value = puzzle[id];
+            if (value != 0) {
+                if (value < 0 || value > SIZE || (candidates[id] & BitBoard.toBit(value)) == 0) {
+                    valid = false;
+                } else {
+                    place(id, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the technique once, or to every cell it fits for the singles.
+     * @return The number of times the technique made progress.
+     */
+    private int apply(Technique technique) {
+        switch (technique) {
+            case HIDDEN_SINGLE: return applyHiddenSingles();
+            case NAKED_SINGLE: return applyNakedSingles();
+            default: return applyOnce(technique) ? 1 : 0;
+        }
+    }
+
+    private boolean applyOnce(Technique technique) {
+        switch (technique) {
+            case POINTING: return applyLockedCandidates(true);
+            case CLAIMING: return applyLockedCandidates(false);
+            case NAKED_PAIR: return applyNakedSubset(2);
+            case X_WING: return applyFish(2);
+            case HIDDEN_PAIR: return applyHiddenSubset(2);
+            case NAKED_TRIPLE: return applyNakedSubset(3);
+            case SWORDFISH: return applyFish(3);
+            case HIDDEN_TRIPLE: return applyHiddenSubset(3);
+            case XY_WING: return applyXYWing();
+            case NAKED_QUAD: return applyNakedSubset(4);
+            case JELLYFISH: return applyFish(4);
+            case HIDDEN_QUAD: return applyHiddenSubset(4);
+            case XY_CHAIN: return applyXYChain();
+            default: throw new IllegalArgumentException("Unknown technique ["+technique+"]");
+        }
+    }
+
+    private void place(int id, int value) {
+        int bit = BitBoard.toBit(value);
+        values[id] = value;
+        candidates[id] = 0;
+        filled++;
+        for (int peer: BitBoard.PEERS[id]) {
+            if (values[peer] == 0) {
+                candidates[peer] &= ~bit;
+                if (candidates[peer] == 0) {
+                    valid = false;
+                }
+            } else if (values[peer] == value) {
+                valid = false;
+            }
+        }
+    }
+
+    /**
+     * Removes the values of the mask from the candidates of an empty cell.
+     * @return true if a candidate was removed.
+     */
+    private boolean eliminate(int id, int mask) {
+        if ((candidates[id] & mask) == 0) {
+            return false;
+        }
+        candidates[id] &= ~mask;
+        if (candidates[id] == 0) {
+            valid = false;
+        }
+        return true;
+    }
+
+    private int applyHiddenSingles() {
+        int placed = 0;
+        for (int group=0; group<BitBoard.MAX_GROUPS && valid; group++) {
+            int[] cells = BitBoard.GROUP_CELLS[group];
+            int once = 0, twice = 0, used = 0;
+            for (int id: cells) {
+                int c = candidates[id];
+                twice |= once & c;
+                once |= c;
+                if (values[id] != 0) {
+                    used |= BitBoard.toBit(values[id]);
+                }
+            }
+            if ((once | used) != BitBoard.ALL_VALUES) {
+                // a value has nowhere to go
+                valid = false;
+                break;
+            }
+            for (int singles=once & ~twice; singles!=0 && valid; singles&=singles - 1) {
+                int bit = Integer.lowestOneBit(singles);
+                boolean found = false;
+                for (int id: cells) {
+                    if ((candidates[id] & bit) != 0) {
+                        place(id, BitBoard.toValue(bit));
+                        placed++;
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    // the only cell for the value was taken by another single of the group
+                    valid = false;
+                }
+            }
+        }
+        return placed;
+    }
+
+    private int applyNakedSingles() {
+        int placed = 0;
+        for (int id=0; id<BitBoard.MAX_CELLS && valid; id++) {
+            if (values[id] == 0 && BitBoard.BIT_COUNT[candidates[id]] == 1) {
+                place(id, BitBoard.toValue(candidates[id]));
+                placed++;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Pointing: a value of a cube that only fits where the cube meets a line can be removed
+     * from the rest of the line.  Claiming: a value of a line that only fits where the line
+     * meets a cube can be removed from the rest of the cube.
+     */
+    private boolean applyLockedCandidates(boolean pointing) {
+        for (int k=0; k<INTERSECTIONS; k++) {
+            int shared = union(INTERSECTION_CELLS[k]);
+            int lineRest = union(LINE_REST[k]);
+            int cubeRest = union(CUBE_REST[k]);
+            int locked = pointing
+                    ? shared & lineRest & ~cubeRest
+                    : shared & cubeRest & ~lineRest;
+            if (locked != 0) {
+                for (int id: pointing ? LINE_REST[k] : CUBE_REST[k]) {
+                    eliminate(id, locked);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int union(int[] cells) {
+        int mask = 0;
+        for (int id: cells) {
+            mask |= candidates[id];
+        }
+        return mask;
+    }
+
+    /**
+     * A naked subset is k cells of a group that only hold k values between them, so those
+     * values can be removed from the other cells of the group.
+     */
+    private boolean applyNakedSubset(int k) {
+        for (int group=0; group<BitBoard.MAX_GROUPS; group++) {
+            int[] cells = BitBoard.GROUP_CELLS[group];
+            int empty = 0;
+            for (int i=0; i<SIZE; i++) {
+                if (values[cells[i]] == 0) {
+                    empty |= 1 << i;
+                }
+            }
+            if (Integer.bitCount(empty) <= k) {
+                continue;
+            }
+            for (int combination: COMBINATIONS[k]) {
+                if ((combination & ~empty) != 0) {
+                    continue;
+                }
+                int mask = 0;
+                for (int bits=combination; bits!=0; bits&=bits - 1) {
+                    mask |= candidates[cells[Integer.numberOfTrailingZeros(bits)]];
+                }
+                if (Integer.bitCount(mask) != k) {
+                    continue;
+                }
+                boolean changed = false;
+                for (int bits=empty & ~combination; bits!=0; bits&=bits - 1) {
+                    changed |= eliminate(cells[Integer.numberOfTrailingZeros(bits)], mask);
+                }
+                if (changed) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A hidden subset is k values of a group that only fit in k cells between them, so every
+     * other value can be removed from those cells.
+     */
+    private boolean applyHiddenSubset(int k) {
+        for (int group=0; group<BitBoard.MAX_GROUPS; group++) {
+            int[] cells = BitBoard.GROUP_CELLS[group];
+            int open = findPositions(cells);
+            if (Integer.bitCount(open) <= k) {
+                continue;
+            }
+            for (int combination: COMBINATIONS[k]) {
+                if ((combination & ~open) != 0) {
+                    continue;
+                }
+                int cover = 0;
+                for (int bits=combination; bits!=0; bits&=bits - 1) {
+                    cover |= positions[Integer.numberOfTrailingZeros(bits)];
+                }
+                if (Integer.bitCount(cover) != k) {
+                    continue;
+                }
+                boolean changed = false;
+                for (int bits=cover; bits!=0; bits&=bits - 1) {
+                    changed |= eliminate(cells[Integer.numberOfTrailingZeros(bits)], ~combination & BitBoard.ALL_VALUES);
+                }
+                if (changed) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fills positions with the group positions where each value fits.
+     * @return The mask of values that still have to be placed in the group.
+     */
+    private int findPositions(int[] cells) {
+        for (int d=0; d<SIZE; d++) {
+            positions[d] = 0;
+        }
+        int open = 0;
+        for (int i=0; i<SIZE; i++) {
+            int c = candidates[cells[i]];
+            open |= c;
+            for (; c!=0; c&=c - 1) {
+                positions[Integer.numberOfTrailingZeros(c)] |= 1 << i;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * A fish is k lines where a value only fits in k crossing lines between them, so the value
+     * can be removed from the rest of the crossing lines.  Rows and columns are both tried as
+     * the base lines.
+     */
+    private boolean applyFish(int k) {
+        for (int d=0; d<SIZE; d++) {
+            int bit = 1 << d;
+            for (int offset: LINE_OFFSETS) {
+                int base = 0;
+                for (int line=0; line<SIZE; line++) {
+                    int[] cells = BitBoard.GROUP_CELLS[offset + line];
+                    int mask = 0;
+                    for (int i=0; i<SIZE; i++) {
+                        if ((candidates[cells[i]] & bit) != 0) {
+                            mask |= 1 << i;
+                        }
+                    }
+                    positions[line] = mask;
+                    if (mask != 0 && Integer.bitCount(mask) <= k) {
+                        base |= 1 << line;
+                    }
+                }
+                for (int combination: COMBINATIONS[k]) {
+                    if ((combination & ~base) != 0) {
+                        continue;
+                    }
+                    int cover = 0;
+                    for (int bits=combination; bits!=0; bits&=bits - 1) {
+                        cover |= positions[Integer.numberOfTrailingZeros(bits)];
+                    }
+                    if (Integer.bitCount(cover) != k) {
+                        continue;
+                    }
+                    boolean changed = false;
+                    for (int line=0; line<SIZE; line++) {
+                        if ((combination & (1 << line)) != 0) {
+                            continue;
+                        }
+                        int[] cells = BitBoard.GROUP_CELLS[offset + line];
+                        for (int bits=positions[line] & cover; bits!=0; bits&=bits - 1) {
+                            changed |= eliminate(cells[Integer.numberOfTrailingZeros(bits)], bit);
+                        }
+                    }
+                    if (changed) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A pivot cell holding ab sees a pincer holding ac and a pincer holding bc.  Whichever value
+     * the pivot takes, one of the pincers is c, so c can be removed from every cell that sees
+     * both pincers.
+     */
+    private boolean applyXYWing() {
+        for (int pivot=0; pivot<BitBoard.MAX_CELLS; pivot++) {
+            int ab = candidates[pivot];
+            if (BitBoard.BIT_COUNT[ab] != 2) {
+                continue;
+            }
+            for (int first: BitBoard.PEERS[pivot]) {
+                int ac = candidates[first];
+                if (BitBoard.BIT_COUNT[ac] != 2 || BitBoard.BIT_COUNT[ac & ab] != 1) {
+                    continue;
+                }
+                int c = ac & ~ab;
+                int bc = (ab & ~ac) | c;
+                for (int second: BitBoard.PEERS[pivot]) {
+                    if (candidates[second] != bc || second == first) {
+                        continue;
+                    }
+                    boolean changed = false;
+                    for (int id: BitBoard.PEERS[first]) {
+                        if (id != second && SEES[second][id]) {
+                            changed |= eliminate(id, c);
+                        }
+                    }
+                    if (changed) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A chain of cells holding two values each, where every cell sees the next and shares a
+     * value with it.  If the first cell is not x, each cell in turn is forced to its other value,
+     * so when the last cell is then forced to x, one of the two ends is x and x can be removed
+     * from every cell that sees both ends.
+     */
+    private boolean applyXYChain() {
+        for (int start=0; start<BitBoard.MAX_CELLS; start++) {
+            int pair = candidates[start];
+            if (BitBoard.BIT_COUNT[pair] != 2) {
+                continue;
+            }
+            for (int x=pair; x!=0; x&=x - 1) {
+                int target = Integer.lowestOneBit(x);
+                visited[start] = true;
+                boolean changed = extendChain(start, start, pair & ~target, target, 1);
+                visited[start] = false;
+                if (changed) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean extendChain(int start, int last, int carry, int target, int length) {
+        for (int next: BitBoard.PEERS[last]) {
+            int pair = candidates[next];
+            if (visited[next] || BitBoard.BIT_COUNT[pair] != 2 || (pair & carry) == 0) {
+                continue;
+            }
+            int other = pair & ~carry;
+            if (other == target && eliminateSeenByBoth(start, next, target)) {
+                return true;
+            }
+            if (length + 1 < MAX_CHAIN_LENGTH) {
+                visited[next] = true;
+                boolean changed = extendChain(start, next, other, target, length + 1);
+                visited[next] = false;
+                if (changed) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean eliminateSeenByBoth(int a, int b, int mask) {
+        boolean changed = false;
+        for (int id: BitBoard.PEERS[a]) {
+            if (id != b && SEES[b][id]) {
+                changed |= eliminate(id, mask);
+            }
+        }
+        return changed;
+    }
+}
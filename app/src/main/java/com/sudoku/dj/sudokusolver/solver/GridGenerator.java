@@ -0,0 +1,142 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import java.util.Random;
+
+/**
+ * Generates filled boards by applying random validity preserving transforms to a seed board:
+ * relabelling the digits, swapping rows within a band and columns within a stack, swapping
+ * whole bands and stacks, and transposing.  Every transform of a valid board is a valid board,
+ * so a new board never needs a search and always takes the same small amount of work.
+ *
+ * The transforms are drawn into arrays kept by the generator and applied in a single pass over
+ * the 81 cells, so generating a board does not allocate.  A generator is not thread safe.
+ */
+public class GridGenerator {
+    private static final int SIZE = CellModel.MAX_CELLS_IN_GROUP;
+    private static final int CUBE = CellModel.MAX_CELLS_IN_CUBE;
+
+    private final int[] seed = new int[CellModel.MAX_CELLS];
+    private final Random random;
+    private final int[] digits = new int[SIZE + 1];
+    private final int[] rows = new int[SIZE];
+    private final int[] columns = new int[SIZE];
+
+    /**
+     * @param seed The 81 values of a filled board, which is copied.
+     */
+    public GridGenerator(int[] seed, Random random) {
+        if (!isValidGrid(seed)) {
+            throw new IllegalArgumentException("Seed is not a filled board");
+        }
+        System.arraycopy(seed, 0, this.seed, 0, CellModel.MAX_CELLS);
+        this.random = random;
+        for (int i=0; i<SIZE; i++) {
+            rows[i] = i;
+            columns[i] = i;
+        }
+        for (int i=0; i<=SIZE; i++) {
+            digits[i] = i;
+        }
+    }
+
+    /**
+     * Returns the filled board whose rows are each the row above shifted by a cube, or by one
+     * more at the start of a band.  It is always valid, so it can seed a generator when no
+     * other board is at hand.
+     */
+    public static int[] patternGrid() {
+        int[] grid = new int[CellModel.MAX_CELLS];
+        for (int r=0; r<SIZE; r++) {
+            for (int c=0; c<SIZE; c++) {
+                grid[(r * SIZE) + c] = (((r * CUBE) + (r / CUBE) + c) % SIZE) + 1;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Converts a mask, a filled board written with the letters A to I, into its values.
+     */
+    public static int[] fromMask(String mask) {
+        if (mask.length() != CellModel.MAX_CELLS) {
+            throw new IllegalArgumentException("Invalid mask ["+mask+"]");
+        }
+        int[] grid = new int[CellModel.MAX_CELLS];
+        for (int i=0; i<CellModel.MAX_CELLS; i++) {
+            grid[i] = mask.charAt(i) - 'A' + 1;
+        }
+        return grid;
+    }
+
+    /**
+     * Returns true if the values form a filled board with no value repeated in a group.
+     */
+    public static boolean isValidGrid(int[] grid) {
+        if (grid == null || grid.length != CellModel.MAX_CELLS) {
+            return false;
+        }
+        int[] used = new int[BitBoard.MAX_GROUPS];
+        for (int id=0; id<CellModel.MAX_CELLS; id++) {
+            int value = grid[id];
+            if (value < 1 || value > SIZE) {
+                return false;
+            }
+            int bit = BitBoard.toBit(value);
+            for (int group: BitBoard.CELL_GROUPS[id]) {
+                if ((used[group] & bit) != 0) {
+                    return false;
+                }
+                used[group] |= bit;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a new random transform of the seed board into the given array of 81 values.
+     */
+    public void next(int[] grid) {
+        shuffle(digits, 1, SIZE);
+        shuffleLines(rows);
+        shuffleLines(columns);
+        boolean transpose = random.nextBoolean();
+        for (int r=0; r<SIZE; r++) {
+            int from = rows[r] * SIZE;
+            int to = r * SIZE;
+            for (int c=0; c<SIZE; c++) {
+                int id = transpose ? (c * SIZE) + r : to + c;
+                grid[id] = digits[seed[from + columns[c]]];
+            }
+        }
+    }
+
+    /**
+     * Reorders the lines by shuffling the bands, then the lines within each band.  The order of
+     * the previous call is shuffled further, which is still a uniform choice.
+     */
+    private void shuffleLines(int[] lines) {
+        for (int b=CUBE - 1; b>0; b--) {
+            swapBands(lines, b, random.nextInt(b + 1));
+        }
+        for (int b=0; b<CUBE; b++) {
+            shuffle(lines, b * CUBE, CUBE);
+        }
+    }
+
+    private static void swapBands(int[] lines, int a, int b) {
+        for (int i=0; i<CUBE; i++) {
+            int t = lines[(a * CUBE) + i];
+            lines[(a * CUBE) + i] = lines[(b * CUBE) + i];
+            lines[(b * CUBE) + i] = t;
+        }
+    }
+
+    private void shuffle(int[] values, int start, int length) {
+        for (int i=length - 1; i>0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = values[start + i];
+            values[start + i] = values[start + j];
+            values[start + j] = t;
+        }
+    }
+}
@@ -17,4 +17,15 @@ public interface Group {
      * Gets the list of cells associated with this group.
      */
     List<Cell> getCells();
+
+    /**
+     * Returns the values used by the cells in this group as a bit mask, where bit (n - 1)
+     * is set when the value n is used.
+     */
+    int getUsedValuesMask();
+
+    /**
+     * Returns the number of cells in this group that do not have an assigned value.
+     */
+    int getEmptyCellCount();
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts non-negative long values in buckets that widen as the values grow.  Each power of two
+ * is split into 16 buckets, so a fixed 960 counters cover every long and a percentile is off by
+ * at most 1/16 of its value.
+ *
+ * Recording is an atomic increment and never blocks, so several threads can record at once.
+ * A snapshot copies the counters; values recorded while it is taken may or may not be in it.
+ */
+public class LogHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid value ["+value+"]");
+        }
+        counts.incrementAndGet(indexOf(value));
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i=0; i<BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, max.get());
+    }
+
+    /**
+     * Values below 16 get a bucket each; above that, the bucket is the position of the highest
+     * bit followed by the next 4 bits.
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int)value;
+        }
+        int high = (Long.SIZE - 1) - Long.numberOfLeadingZeros(value);
+        int sub = (int)(value >>> (high - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return ((high - SUB_BITS + 1) << SUB_BITS) + sub;
+    }
+
+    /**
+     * Returns the largest value that falls in the bucket.
+     */
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >> SUB_BITS) - 1;
+        long lower = (long)(SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lower + ((1L << shift) - 1);
+    }
+
+    /**
+     * The counts of a histogram at one point in time.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count, max;
+
+        private Snapshot(long[] counts, long count, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the value below which the given percent of the values fall, or 0 when nothing
+         * was recorded.
+         * @param percent From 0 to 100.
+         */
+        public long getPercentile(double percent) {
+            if (percent < 0 || percent > 100) {
+                throw new IllegalArgumentException("Invalid percentile ["+percent+"]");
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long)Math.ceil((percent / 100) * count));
+            long seen = 0;
+            for (int i=0; i<BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
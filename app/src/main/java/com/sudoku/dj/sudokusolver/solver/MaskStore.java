@@ -0,0 +1,174 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads masks from a file of fixed width records, so any mask can be fetched with a single
+ * positional read.  A mask is a filled board written with the letters A to I in place of
+ * values, whose first row is always ABCDEFGHI.
+ *
+ * Each row of a mask is a permutation of the nine letters, so a record holds the rank of each
+ * permutation in 19 bits.  Only rows 2 to 8 are stored: the first row is fixed, and the last row
+ * is the letter missing from each column.  The file starts with a header of the magic number and
+ * the number of records, followed by the records of RECORD_SIZE bytes each.
+ */
+public class MaskStore {
+    public static final int MAGIC = 0x4D534B31; // "MSK1"
+    public static final int HEADER_SIZE = 8;
+    private static final int SIZE = CellModel.MAX_CELLS_IN_GROUP;
+    private static final int STORED_ROWS = SIZE - 2;
+    static final int RANK_BITS = 19;
+    public static final int RECORD_SIZE = ((STORED_ROWS * RANK_BITS) + 7) / 8;
+
+    private static final int[] FACTORIALS = new int[SIZE];
+    static {
+        FACTORIALS[0] = 1;
+        for (int i=1; i<SIZE; i++) {
+            FACTORIALS[i] = FACTORIALS[i - 1] * i;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long offset;
+    private final int count;
+
+    /**
+     * Opens the store found at the given offset of the channel, which lets a store be read from
+     * inside a larger file, such as an uncompressed asset in an APK.
+     */
+    public MaskStore(FileChannel channel, long offset) throws IOException {
+        this.channel = channel;
+        this.offset = offset;
+        ByteBuffer header = read(offset, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a mask store");
+        }
+        this.count = header.getInt();
+    }
+
+    public int getMaskCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mask with the given index as 81 letters.
+     */
+    public String getMask(int index) throws IOException {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Invalid mask index ["+index+"]");
+        }
+        ByteBuffer record = read(offset + HEADER_SIZE + ((long)index * RECORD_SIZE), RECORD_SIZE);
+        return decode(record.array());
+    }
+
+    private ByteBuffer read(long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of mask store");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Packs a mask of 81 letters into a record.
+     */
+    public static byte[] encode(String mask) {
+        if (mask.length() != CellModel.MAX_CELLS || !mask.startsWith("ABCDEFGHI")) {
+            throw new IllegalArgumentException("Invalid mask ["+mask+"]");
+        }
+        byte[] record = new byte[RECORD_SIZE];
+        int[] row = new int[SIZE];
+        for (int r=1; r<=STORED_ROWS; r++) {
+            for (int i=0; i<SIZE; i++) {
+                row[i] = mask.charAt((r * SIZE) + i) - 'A';
+            }
+            writeBits(record, (r - 1) * RANK_BITS, rank(row));
+        }
+        if (!decode(record).equals(mask)) {
+            throw new IllegalArgumentException("Mask rows are not permutations ["+mask+"]");
+        }
+        return record;
+    }
+
+    /**
+     * Unpacks a record into a mask of 81 letters.
+     */
+    public static String decode(byte[] record) {
+        char[] mask = new char[CellModel.MAX_CELLS];
+        int[] missing = new int[SIZE];
+        int[] row = new int[SIZE];
+        for (int i=0; i<SIZE; i++) {
+            mask[i] = (char)('A' + i);
+            missing[i] = BitBoard.ALL_VALUES & ~(1 << i);
+        }
+        for (int r=1; r<=STORED_ROWS; r++) {
+            unrank(readBits(record, (r - 1) * RANK_BITS), row);
+            for (int i=0; i<SIZE; i++) {
+                mask[(r * SIZE) + i] = (char)('A' + row[i]);
+                missing[i] &= ~(1 << row[i]);
+            }
+        }
+        for (int i=0; i<SIZE; i++) {
+            mask[((SIZE - 1) * SIZE) + i] = (char)('A' + Integer.numberOfTrailingZeros(missing[i]));
+        }
+        return new String(mask);
+    }
+
+    /**
+     * Returns the lexicographic rank of a permutation of 0 to 8.
+     */
+    static int rank(int[] permutation) {
+        int used = 0, rank = 0;
+        for (int i=0; i<SIZE; i++) {
+            int smaller = Integer.bitCount(((1 << permutation[i]) - 1) & ~used);
+            rank += smaller * FACTORIALS[SIZE - 1 - i];
+            used |= 1 << permutation[i];
+        }
+        return rank;
+    }
+
+    /**
+     * Fills the permutation of 0 to 8 with the given lexicographic rank.
+     */
+    static void unrank(int rank, int[] permutation) {
+        int unused = BitBoard.ALL_VALUES;
+        for (int i=0; i<SIZE; i++) {
+            int f = FACTORIALS[SIZE - 1 - i];
+            int skip = rank / f;
+            rank %= f;
+            int mask = unused;
+            for (int s=0; s<skip; s++) {
+                mask &= mask - 1;
+            }
+            int bit = Integer.lowestOneBit(mask);
+            permutation[i] = Integer.numberOfTrailingZeros(bit);
+            unused &= ~bit;
+        }
+    }
+
+    /**
+     * Writes a permutation rank of RANK_BITS bits, starting at the given bit of the record.
+     */
+    static void writeBits(byte[] record, int start, int value) {
+        for (int i=0; i<RANK_BITS; i++) {
+            if ((value & (1 << (RANK_BITS - 1 - i))) != 0) {
+                int bit = start + i;
+                record[bit >> 3] |= 0x80 >>> (bit & 7);
+            }
+        }
+    }
+
+    static int readBits(byte[] record, int start) {
+        int value = 0;
+        for (int i=0; i<RANK_BITS; i++) {
+            int bit = start + i;
+            value = (value << 1) | ((record[bit >> 3] >> (7 - (bit & 7))) & 1);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,229 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Enumerates the solutions of a board on a fork/join pool.  Each task propagates singles on its
+ * own copy of the board, then picks the empty cell with the fewest candidates and, while the
+ * pool is short of queued work, forks one subtask per candidate value.  Idle workers steal the
+ * queued subtasks, so a subtree that finishes early does not leave its thread idle.  Once enough
+ * work is queued, a task searches the rest of its subtree depth first on its own board, undoing
+ * each choice through the board's trail.
+ *
+ * This is meant for exhaustive work, like counting the solutions of a sparse board or proving
+ * that a board has no solution, where every subtree has to be visited.
+ */
+public class ParallelSearch {
+    // fork only while fewer than this many forked tasks are waiting to be stolen
+    private static final int SURPLUS_THRESHOLD = 2;
+
+    private final ForkJoinPool pool;
+
+    public ParallelSearch(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Counts the solutions of the model's current values, stopping once the limit is reached.
+     * The model is not modified.
+     * @return The number of solutions found, which is at most the limit.  A result of 0
+     *         without cancellation proves the board has no solution.
+     */
+    public Result countSolutions(CellModel model, long limit, AtomicBoolean canCancel) {
+        return count(new BitBoard(model.getBoard()), limit, canCancel);
+    }
+
+    /**
+     * Counts the solutions of the model's locked values, ignoring any values a paused solve
+     * left in the other cells.  The model is not modified.
+     */
+    public Result countLockedSolutions(CellModel model, long limit, AtomicBoolean canCancel) {
+        BitBoard source = model.getBoard();
+        BitBoard board = new BitBoard();
+        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+            if (source.isLocked(id)) {
+                board.set(id, source.getValue(id));
+            }
+        }
+        return count(board, limit, canCancel);
+    }
+
+    private Result count(BitBoard board, long limit, AtomicBoolean canCancel) {
+        Search search = new Search(limit, canCancel);
+        long count = 0;
+        if (!board.hasDuplicates()) {
+            Propagator propagator = new Propagator(board);
+            if (propagator.propagateAll()) {
+                count = pool.invoke(new SearchTask(search, board));
+            }
+        }
+        return new Result(Math.min(count, limit), search.solution.get());
+    }
+
+    /**
+     * The outcome of a search: the number of solutions found, and the first one found.
+     */
+    public static class Result {
+        private final long count;
+        private final int[] solution;
+
+        public Result(long count, int[] solution) {
+            this.count = count;
+            this.solution = solution;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the values of the first solution found, or null if there was none.
+         */
+        public int[] getSolution() {
+            return solution;
+        }
+    }
+
+    /**
+     * State shared by all tasks of one search.
+     */
+    private static class Search {
+        private final long limit;
+        private final AtomicBoolean canCancel;
+        private final AtomicLong found = new AtomicLong();
+        private final AtomicReference<int[]> solution = new AtomicReference<>();
+
+        public Search(long limit, AtomicBoolean canCancel) {
+            this.limit = limit;
+            this.canCancel = canCancel;
+        }
+
+        public boolean isStopped() {
+            return found.get() >= limit || (canCancel != null && canCancel.get());
+        }
+
+        public void addSolution(BitBoard board) {
+            if (solution.get() == null) {
+                int[] values = new int[BitBoard.MAX_CELLS];
+                for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+                    values[id] = board.getValue(id);
+                }
+                solution.compareAndSet(null, values);
+            }
+            found.incrementAndGet();
+        }
+    }
+
+    /**
+     * Searches the subtree below a board that has already been propagated without a
+     * contradiction.
+     */
+    private static class SearchTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final BitBoard board;
+
+        public SearchTask(Search search, BitBoard board) {
+            this.search = search;
+            this.board = board;
+        }
+
+        @Override
+        protected Long compute() {
+            if (search.isStopped()) {
+                return 0L;
+            }
+            if (board.isSolved()) {
+                search.addSolution(board);
+                return 1L;
+            }
+            if (getSurplusQueuedTaskCount() >= SURPLUS_THRESHOLD) {
+                return searchSequentially();
+            }
+
+            int id = chooseCell(board);
+            List<SearchTask> children = new ArrayList<>(BitBoard.BIT_COUNT[board.getCandidates(id)]);
+            for (int mask=board.getCandidates(id); mask!=0; mask&=mask-1) {
+                BitBoard child = new BitBoard(board);
+                child.set(id, BitBoard.toValue(Integer.lowestOneBit(mask)));
+                if (new Propagator(child).propagate(id)) {
+                    children.add(new SearchTask(search, child));
+                }
+            }
+            long count = 0;
+            for (SearchTask task: invokeAll(children)) {
+                count += task.join();
+            }
+            return count;
+        }
+
+        private long searchSequentially() {
+            Propagator propagator = new Propagator(board);
+            int[] cells = new int[BitBoard.MAX_CELLS];
+            int[] untried = new int[BitBoard.MAX_CELLS];
+            int[] marks = new int[BitBoard.MAX_CELLS];
+            long count = 0;
+            int depth = 0;
+            boolean descend = true;
+            board.mark();
+            while (!search.isStopped()) {
+                if (descend) {
+                    if (board.isSolved()) {
+                        search.addSolution(board);
+                        count++;
+                    } else {
+                        int id = chooseCell(board);
+                        cells[depth] = id;
+                        untried[depth] = board.getCandidates(id);
+                        marks[depth] = board.mark();
+                        depth++;
+                    }
+                }
+                if (depth == 0) {
+                    break;
+                }
+                int top = depth - 1;
+                board.undo(marks[top]);
+                if (untried[top] == 0) {
+                    depth--;
+                    descend = false;
+                    continue;
+                }
+                int bit = Integer.lowestOneBit(untried[top]);
+                untried[top] &= ~bit;
+                board.set(cells[top], BitBoard.toValue(bit));
+                descend = propagator.propagate(cells[top]);
+            }
+            board.clearTrail();
+            return count;
+        }
+    }
+
+    /**
+     * Returns the empty cell with the fewest candidates.
+     */
+    private static int chooseCell(BitBoard board) {
+        int best = -1, bestCount = Integer.MAX_VALUE;
+        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+            if (!board.isEmpty(id)) {
+                continue;
+            }
+            int count = board.getCandidateCount(id);
+            if (count < bestCount) {
+                best = id;
+                bestCount = count;
+                if (count <= 2) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+}
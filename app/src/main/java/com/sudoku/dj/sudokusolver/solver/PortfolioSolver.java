@@ -0,0 +1,227 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Races several differently configured solvers against each other on separate threads.  Each
+ * member of the portfolio solves its own copy of the locked cells of the model, with its own
+ * solver type and random seed, and the first member to either solve the board or prove it has
+ * no solution wins.  The winning values are copied into the shared model, and the other members
+ * are cancelled through their cancel flags.
+ *
+ * Randomized solvers have heavy tailed run times, so the fastest of several independent runs is
+ * usually far faster than a typical single run.
+ */
+public class PortfolioSolver {
+    private static final long POLL_MILLIS = 50;
+    private static final Solver.SolverType[] DEFAULT_TYPES = {
+            Solver.SolverType.BACKTRACKING,
+            Solver.SolverType.DANCING_LINKS,
+            Solver.SolverType.BOARD_BUILDER
+    };
+
+    private final ExecutorService executor;
+    private final List<Member> members;
+    private final SolverMetrics metrics = new SolverMetrics();
+    private SolverProgress progress;
+    private boolean unsolvable;
+    private int maxAttempts = Integer.MAX_VALUE;
+
+    public PortfolioSolver(ExecutorService executor, List<Member> members) {
+        this.executor = executor;
+        this.members = Collections.unmodifiableList(new ArrayList<>(members));
+    }
+
+    /**
+     * Builds a portfolio that cycles through the solver types, giving every member its own seed.
+     */
+    public static List<Member> buildMembers(int count, long seed) {
+        List<Member> members = new ArrayList<>(count);
+        for (int i=0; i<count; i++) {
+            members.add(new Member(DEFAULT_TYPES[i % DEFAULT_TYPES.length], seed + i));
+        }
+        return members;
+    }
+
+    /**
+     * Solves the model by racing every member of the portfolio.  Unlocked values in the model
+     * are ignored, and replaced with the solution when one is found.
+     * @return The number of steps taken by the winning member, or by the members that finished
+     *         if the race was cancelled.
+     */
+    public int solve(CellModel model, AtomicBoolean canCancel) {
+        unsolvable = false;
+        metrics.reset();
+        if (progress != null) {
+            progress.startAttempt(members.size());
+        }
+        List<Integer> locked = new ArrayList<>(CellModel.MAX_CELLS);
+        for (int i=0; i<CellModel.MAX_CELLS; i++) {
+            Cell cell = model.getCell(i);
+            locked.add(cell.isLocked() ? cell.getValue() : 0);
+        }
+
+        CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+        List<AtomicBoolean> flags = new ArrayList<>(members.size());
+        for (Member member: members) {
+            AtomicBoolean flag = new AtomicBoolean(false);
+            flags.add(flag);
+            completion.submit(new Attempt(locked, member, maxAttempts, flag));
+        }
+
+        int steps = 0;
+        Result winner = null;
+        try {
+            int pending = members.size();
+            while (pending > 0 && winner == null && !canCancel.get()) {
+                Future<Result> future = completion.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    continue;
+                }
+                pending--;
+                Result result = future.get();
+                steps += result.steps;
+                metrics.add(result.metrics);
+                if (result.solved || result.unsolvable) {
+                    winner = result;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Portfolio member failed", e.getCause());
+        } finally {
+            for (AtomicBoolean flag: flags) {
+                flag.set(true);
+            }
+        }
+
+        if (winner == null) {
+            return steps;
+        }
+        if (winner.solved) {
+            for (int i=0; i<CellModel.MAX_CELLS; i++) {
+                Cell cell = model.getCell(i);
+                if (!cell.isLocked()) {
+                    model.setValue(cell, winner.values[i]);
+                }
+            }
+        }
+        unsolvable = winner.unsolvable;
+        return winner.steps;
+    }
+
+    /**
+     * Sets how many attempts each member makes before giving up, see
+     * {@link RestartingSolver#setMaxAttempts(int)}.  When every member gives up, solve()
+     * returns with the board unsolved.
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be positive ["+maxAttempts+"]");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Returns true when a member of the last race proved that the puzzle has no solution.
+     */
+    public boolean isUnsolvable() {
+        return unsolvable;
+    }
+
+    /**
+     * Sets where the number of racing members is published.  The members run on other threads,
+     * so their steps are not published.
+     */
+    public void setProgress(SolverProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Returns the metrics of the members that finished the last race, merged.  Members still
+     * running when the race was decided are not included.
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * A single solver configuration in the portfolio.
+     */
+    public static class Member {
+        private final Solver.SolverType type;
+        private final long seed;
+
+        public Member(Solver.SolverType type, long seed) {
+            this.type = type;
+            this.seed = seed;
+        }
+
+        public Solver.SolverType getType() {
+            return type;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+    }
+
+    private static class Result {
+        private final int[] values;
+        private final boolean solved, unsolvable;
+        private final int steps;
+        private final SolverMetrics metrics;
+
+        public Result(int[] values, boolean solved, boolean unsolvable, int steps, SolverMetrics metrics) {
+            this.values = values;
+            this.solved = solved;
+            this.unsolvable = unsolvable;
+            this.steps = steps;
+            this.metrics = metrics;
+        }
+    }
+
+    private static class Attempt implements Callable<Result> {
+        private final List<Integer> locked;
+        private final Member member;
+        private final int maxAttempts;
+        private final AtomicBoolean canCancel;
+
+        public Attempt(List<Integer> locked, Member member, int maxAttempts, AtomicBoolean canCancel) {
+            this.locked = locked;
+            this.member = member;
+            this.maxAttempts = maxAttempts;
+            this.canCancel = canCancel;
+        }
+
+        @Override
+        public Result call() {
+            CellModel model = new CellModel(locked);
+            // the member's board is never shown, so it need not publish its changes
+            model.setQuiet(true);
+            RestartingSolver solver = new RestartingSolver(model, member.getType(),
+                    RestartingSolver.DEFAULT_POLICY, new Random(member.getSeed()));
+            solver.setMaxAttempts(maxAttempts);
+            int steps = solver.solve(canCancel);
+            boolean unsolvable = solver.isUnsolvable();
+
+            int[] values = new int[CellModel.MAX_CELLS];
+            for (int i=0; i<CellModel.MAX_CELLS; i++) {
+                values[i] = model.getCell(i).getValue();
+            }
+            return new Result(values, model.isSolved(), unsolvable, steps, solver.getMetrics());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+/**
+ * Applies naked singles and hidden singles to a cell model until no more values can be
+ * deduced.  A naked single is an empty cell with only one available value, and a hidden single
+ * is a value that only one empty cell of a group can hold.  Groups are processed from a work
+ * queue: a group is queued when one of its cells is assigned, since only the candidates of the
+ * peers of that cell can change.
+ *
+ * Values are assigned through the board, so model listeners see every deduced value.  To take
+ * back the deduced values, mark the board before propagating and undo back to the mark.
+ */
+public class Propagator {
+    private final BitBoard board;
+    private final int[] queue = new int[BitBoard.MAX_GROUPS];
+    private final boolean[] queued = new boolean[BitBoard.MAX_GROUPS];
+    private int head, tail, queueSize;
+    private long assigned;
+
+    public Propagator(CellModel model) {
+        this(model.getBoard());
+    }
+
+    public Propagator(BitBoard board) {
+        this.board = board;
+    }
+
+    /**
+     * Propagates from every group of the board.
+     * @return false if the board was found to have no solution.
+     */
+    public boolean propagateAll() {
+        clear();
+        for (int group=0; group<BitBoard.MAX_GROUPS; group++) {
+            enqueue(group);
+        }
+        return run();
+    }
+
+    /**
+     * Propagates from the groups of a cell that was just assigned.
+     * @return false if the assignment left the board with no solution.
+     */
+    public boolean propagate(int cellID) {
+        clear();
+        enqueueGroups(cellID);
+        return run();
+    }
+
+    /**
+     * Returns the number of values assigned by propagation since the propagator was built.
+     */
+    public long getAssignedCount() {
+        return assigned;
+    }
+
+    private void clear() {
+        while (queueSize > 0) {
+            queued[dequeue()] = false;
+        }
+        head = 0;
+        tail = 0;
+    }
+
+    private boolean run() {
+        while (queueSize > 0) {
+            int group = dequeue();
+            queued[group] = false;
+            if (!applyNakedSingles(group) || !applyHiddenSingles(group)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean applyNakedSingles(int group) {
+        for (int id: BitBoard.GROUP_CELLS[group]) {
+            if (!board.isEmpty(id)) {
+                continue;
+            }
+            int candidates = board.getCandidates(id);
+            if (candidates == 0) {
+                return false;
+            }
+            if ((candidates & (candidates - 1)) == 0) {
+                assign(id, candidates);
+            }
+        }
+        return true;
+    }
+
+    private boolean applyHiddenSingles(int group) {
+        int once = 0, twice = 0;
+        for (int id: BitBoard.GROUP_CELLS[group]) {
+            int candidates = board.getCandidates(id);
+            twice |= once & candidates;
+            once |= candidates;
+        }
+        if ((once | board.getGroupMask(group)) != BitBoard.ALL_VALUES) {
+            // some value can no longer be placed anywhere in the group
+            return false;
+        }
+        int hidden = once & ~twice;
+        if (hidden == 0) {
+            return true;
+        }
+        for (int id: BitBoard.GROUP_CELLS[group]) {
+            int bit = board.getCandidates(id) & hidden;
+            if (bit == 0) {
+                continue;
+            }
+            if ((bit & (bit - 1)) != 0) {
+                // the cell is the only place for two values
+                return false;
+            }
+            assign(id, bit);
+        }
+        return true;
+    }
+
+    private void assign(int id, int bit) {
+        assigned++;
+        board.set(id, BitBoard.toValue(bit));
+        enqueueGroups(id);
+    }
+
+    private void enqueueGroups(int id) {
+        for (int group: BitBoard.CELL_GROUPS[id]) {
+            enqueue(group);
+        }
+    }
+
+    private void enqueue(int group) {
+        if (queued[group]) {
+            return;
+        }
+        queued[group] = true;
+        queue[tail] = group;
+        tail = (tail + 1) % queue.length;
+        queueSize++;
+    }
+
+    private int dequeue() {
+        int group = queue[head];
+        head = (head + 1) % queue.length;
+        queueSize--;
+        return group;
+    }
+}
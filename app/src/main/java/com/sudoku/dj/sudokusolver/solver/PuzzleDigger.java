@@ -0,0 +1,109 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Builds puzzles with a unique solution by digging clues out of a filled board.  Cells are
+ * visited in a random order and each clue is removed only if the puzzle stays unique, until the
+ * requested number of clues is left, every cell has been tried, or the time budget runs out.
+ * A dig can stop above the requested number of clues, since most boards have no unique puzzle
+ * with very few clues.
+ *
+ * The puzzle is known to be unique before each removal, so its only solution is the filled
+ * board.  Removing a clue keeps it unique exactly when none of the other candidates of the cell
+ * lead to a solution, so each check places one of those candidates and looks for a single
+ * solution, rather than counting the solutions of the whole puzzle.  The board and the
+ * {@link SolutionCounter} are kept between checks and between digs, so digging does not
+ * allocate.  A digger is not thread safe.
+ */
+public class PuzzleDigger {
+    private final BitBoard board = new BitBoard();
+    private final SolutionCounter counter = new SolutionCounter();
+    private final int[] order = new int[BitBoard.MAX_CELLS];
+    private final Random random;
+    private long checks;
+
+    public PuzzleDigger(Random random) {
+        this.random = random;
+        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+            order[id] = id;
+        }
+    }
+
+    /**
+     * Digs a unique puzzle out of the filled board.
+     * @param grid The 81 values of a filled board.
+     * @param targetClues The number of clues to stop at.
+     * @param maxMillis The time budget, after which the puzzle dug so far is returned.
+     * @param puzzle Receives the 81 values of the puzzle, with 0 for the empty cells.
+     * @param canCancel Stops the dig early when set, may be null.
+     * @return The number of clues left in the puzzle.
+     */
+    public int dig(int[] grid, int targetClues, long maxMillis, int[] puzzle, AtomicBoolean canCancel) {
+        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+            if (grid[id] < 1 || grid[id] > BitBoard.MAX_CELLS_IN_GROUP) {
+                throw new IllegalArgumentException("Grid is not a filled board");
+            }
+            board.set(id, grid[id]);
+        }
+        if (board.hasDuplicates()) {
+            throw new IllegalArgumentException("Grid is not a filled board");
+        }
+        long deadline = System.nanoTime() + (maxMillis * 1000000L);
+        int clues = BitBoard.MAX_CELLS;
+        checks = 0;
+        shuffleOrder();
+        for (int i=0; i<BitBoard.MAX_CELLS && clues > targetClues; i++) {
+            if (System.nanoTime() - deadline > 0 || (canCancel != null && canCancel.get())) {
+                break;
+            }
+            int id = order[i];
+            int value = board.getValue(id);
+            board.set(id, 0);
+            if (hasOtherSolution(id, value, canCancel)) {
+                board.set(id, value);
+            } else {
+                clues--;
+            }
+        }
+        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+            puzzle[id] = board.getValue(id);
+        }
+        return clues;
+    }
+
+    /**
+     * Returns the number of single solution searches made by the last dig.
+     */
+    public long getChecks() {
+        return checks;
+    }
+
+    /**
+     * Returns true if the cell, just emptied, has a solution with a value other than its
+     * solved value.  A cancelled search also returns true, so the clue is kept.
+     */
+    private boolean hasOtherSolution(int id, int value, AtomicBoolean canCancel) {
+        int others = board.getCandidates(id) & ~BitBoard.toBit(value);
+        boolean found = false;
+        while (others != 0 && !found) {
+            int bit = Integer.lowestOneBit(others);
+            others &= ~bit;
+            checks++;
+            board.set(id, BitBoard.toValue(bit));
+            found = counter.count(board, 1, canCancel) > 0 || (canCancel != null && canCancel.get());
+            board.set(id, 0);
+        }
+        return found;
+    }
+
+    private void shuffleOrder() {
+        for (int i=BitBoard.MAX_CELLS - 1; i>0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads graded puzzles from a file of fixed width records grouped by difficulty level, so a
+ * puzzle of any level can be fetched with a single positional read.
+ *
+ * The file starts with a header of the magic number and the number of puzzles of each
+ * {@link DifficultyGrader.Level}, in level order.  The records follow, all of the first level,
+ * then all of the next, so the header is also the index of where each level starts.  A record
+ * holds the score, the solution as the permutation ranks of its first 8 rows, as in a
+ * {@link MaskStore}, and a bit for each cell that is a clue.
+ */
+public class PuzzleStore {
+    public static final int MAGIC = 0x505A4C31; // "PZL1"
+    private static final DifficultyGrader.Level[] LEVELS = DifficultyGrader.Level.values();
+    public static final int HEADER_SIZE = 4 + (4 * LEVELS.length);
+    private static final int SIZE = CellModel.MAX_CELLS_IN_GROUP;
+    private static final int SCORE_BITS = 8;
+    private static final int STORED_ROWS = SIZE - 1;
+    private static final int CLUES_START = SCORE_BITS + (STORED_ROWS * MaskStore.RANK_BITS);
+    public static final int RECORD_SIZE = (CLUES_START + CellModel.MAX_CELLS + 7) / 8;
+
+    private final FileChannel channel;
+    private final long offset;
+    private final int[] counts = new int[LEVELS.length];
+    private final long[] starts = new long[LEVELS.length];
+
+    /**
+     * Opens the store found at the given offset of the channel, which lets a store be read from
+     * inside a larger file, such as an uncompressed asset in an APK.
+     */
+    public PuzzleStore(FileChannel channel, long offset) throws IOException {
+        this.channel = channel;
+        this.offset = offset;
+        ByteBuffer header = read(offset, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a puzzle store");
+        }
+        long start = 0;
+        for (int i=0; i<LEVELS.length; i++) {
+            counts[i] = header.getInt();
+            starts[i] = start;
+            start += counts[i];
+        }
+    }
+
+    public int getPuzzleCount(DifficultyGrader.Level level) {
+        return counts[level.ordinal()];
+    }
+
+    /**
+     * Returns the puzzle with the given index among the puzzles of the level.
+     */
+    public StoredPuzzle getPuzzle(DifficultyGrader.Level level, int index) throws IOException {
+        if (index < 0 || index >= counts[level.ordinal()]) {
+            throw new IndexOutOfBoundsException("Invalid "+level+" puzzle index ["+index+"]");
+        }
+        long record = starts[level.ordinal()] + index;
+        ByteBuffer buffer = read(offset + HEADER_SIZE + (record * RECORD_SIZE), RECORD_SIZE);
+        return decode(buffer.array(), level);
+    }
+
+    private ByteBuffer read(long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of puzzle store");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes the header for the given number of puzzles of each level.  The records must be
+     * written after it in level order.
+     */
+    public static void writeHeader(DataOutput out, int[] levelCounts) throws IOException {
+        if (levelCounts.length != LEVELS.length) {
+            throw new IllegalArgumentException("Expected a count for each of "+LEVELS.length+" levels");
+        }
+        out.writeInt(MAGIC);
+        for (int count: levelCounts) {
+            out.writeInt(count);
+        }
+    }
+
+    /**
+     * Packs a puzzle and its solution into a record.
+     * @param score The grader's score, from 0 to 255.
+     */
+    public static byte[] encode(int[] solution, int[] puzzle, int score) {
+        if (!GridGenerator.isValidGrid(solution)) {
+            throw new IllegalArgumentException("Solution is not a filled board");
+        }
+        if (score < 0 || score >= (1 << SCORE_BITS)) {
+            throw new IllegalArgumentException("Invalid score ["+score+"]");
+        }
+        byte[] record = new byte[RECORD_SIZE];
+        record[0] = (byte)score;
+        int[] row = new int[SIZE];
+        for (int r=0; r<STORED_ROWS; r++) {
+            for (int i=0; i<SIZE; i++) {
+                row[i] = solution[(r * SIZE) + i] - 1;
+            }
+            MaskStore.writeBits(record, SCORE_BITS + (r * MaskStore.RANK_BITS), MaskStore.rank(row));
+        }
+        for (int id=0; id<CellModel.MAX_CELLS; id++) {
+            if (puzzle[id] != 0) {
+                if (puzzle[id] != solution[id]) {
+                    throw new IllegalArgumentException("Clue ["+id+"] does not match the solution");
+                }
+                int bit = CLUES_START + id;
+                record[bit >> 3] |= 0x80 >>> (bit & 7);
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Unpacks a record of the given level.
+     */
+    public static StoredPuzzle decode(byte[] record, DifficultyGrader.Level level) {
+        int[] solution = new int[CellModel.MAX_CELLS];
+        int[] missing = new int[SIZE];
+        int[] row = new int[SIZE];
+        for (int i=0; i<SIZE; i++) {
+            missing[i] = BitBoard.ALL_VALUES;
+        }
+        for (int r=0; r<STORED_ROWS; r++) {
+            MaskStore.unrank(MaskStore.readBits(record, SCORE_BITS + (r * MaskStore.RANK_BITS)), row);
+            for (int i=0; i<SIZE; i++) {
+                solution[(r * SIZE) + i] = row[i] + 1;
+                missing[i] &= ~(1 << row[i]);
+            }
+        }
+        for (int i=0; i<SIZE; i++) {
+            solution[(STORED_ROWS * SIZE) + i] = Integer.numberOfTrailingZeros(missing[i]) + 1;
+        }
+        int[] values = new int[CellModel.MAX_CELLS];
+        for (int id=0; id<CellModel.MAX_CELLS; id++) {
+            int bit = CLUES_START + id;
+            if ((record[bit >> 3] & (0x80 >>> (bit & 7))) != 0) {
+                values[id] = solution[id];
+            }
+        }
+        return new StoredPuzzle(values, solution, record[0] & 0xFF, level);
+    }
+
+    /**
+     * A puzzle read from the store.
+     */
+    public static class StoredPuzzle {
+        private final int[] values, solution;
+        private final int score;
+        private final DifficultyGrader.Level level;
+
+        public StoredPuzzle(int[] values, int[] solution, int score, DifficultyGrader.Level level) {
+            this.values = values;
+            this.solution = solution;
+            this.score = score;
+            this.level = level;
+        }
+
+        /**
+         * Returns the 81 values of the puzzle, with 0 for the empty cells.
+         */
+        public int[] getValues() {
+            return values;
+        }
+
+        public int[] getSolution() {
+            return solution;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public DifficultyGrader.Level getLevel() {
+            return level;
+        }
+    }
+}
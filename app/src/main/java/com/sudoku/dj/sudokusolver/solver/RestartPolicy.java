@@ -0,0 +1,117 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+/**
+ * Decides how many steps each attempt of a {@link RestartingSolver} may take before the solver
+ * gives up on its random choices and starts over.  Attempts are numbered from 1.
+ *
+ * Randomized searches have heavy tailed run times: most attempts finish quickly, but a few get
+ * stuck far longer than a restart would cost.  Cutting attempts short bounds the time lost to
+ * the unlucky ones, and a growing cutoff still lets hard boards be searched to the end.
+ */
+public abstract class RestartPolicy {
+    /**
+     * Never restarts, every attempt runs until it finishes.
+     */
+    public static final RestartPolicy NEVER = new RestartPolicy() {
+        @Override
+        public int getCutoff(int attempt) {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return "never";
+        }
+    };
+
+    /**
+     * Returns the maximum number of steps the given attempt may take.
+     */
+    public abstract int getCutoff(int attempt);
+
+    /**
+     * Gives every attempt the same cutoff.  A fixed cutoff never proves a board has no
+     * solution if the proof takes more steps than the cutoff.
+     */
+    public static RestartPolicy fixed(final int steps) {
+        checkPositive(steps);
+        return new RestartPolicy() {
+            @Override
+            public int getCutoff(int attempt) {
+                return steps;
+            }
+
+            @Override
+            public String toString() {
+                return "fixed("+steps+")";
+            }
+        };
+    }
+
+    /**
+     * Starts with the given cutoff and multiplies it by the factor after every attempt.
+     */
+    public static RestartPolicy geometric(final int steps, final double factor) {
+        checkPositive(steps);
+        if (factor < 1) {
+            throw new IllegalArgumentException("Restart factor must be at least 1 ["+factor+"]");
+        }
+        return new RestartPolicy() {
+            @Override
+            public int getCutoff(int attempt) {
+                return clamp(steps * Math.pow(factor, attempt - 1));
+            }
+
+            @Override
+            public String toString() {
+                return "geometric("+steps+", "+factor+")";
+            }
+        };
+    }
+
+    /**
+     * Multiplies the given unit by the Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, ...  Within
+     * a constant factor, this is the best schedule when nothing is known about the distribution
+     * of run times.
+     */
+    public static RestartPolicy luby(final int unit) {
+        checkPositive(unit);
+        return new RestartPolicy() {
+            @Override
+            public int getCutoff(int attempt) {
+                return clamp((double)unit * lubyTerm(attempt));
+            }
+
+            @Override
+            public String toString() {
+                return "luby("+unit+")";
+            }
+        };
+    }
+
+    /**
+     * Returns the given term of the Luby sequence, starting from 1.
+     */
+    static long lubyTerm(int i) {
+        while (true) {
+            int k = 1;
+            while ((1L << k) - 1 < i) {
+                k++;
+            }
+            if ((1L << k) - 1 == i) {
+                return 1L << (k - 1);
+            }
+            i -= (1 << (k - 1)) - 1;
+        }
+    }
+
+    private static int clamp(double steps) {
+        return steps >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)steps;
+    }
+
+    private static void checkPositive(int steps) {
+        if (steps <= 0) {
+            throw new IllegalArgumentException("Restart cutoff must be positive ["+steps+"]");
+        }
+    }
+}
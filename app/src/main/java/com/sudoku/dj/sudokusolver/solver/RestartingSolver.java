@@ -0,0 +1,157 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a {@link Solver} in attempts, cutting each attempt off after the number of steps its
+ * {@link RestartPolicy} allows, and resetting the unlocked cells before the next one.  The
+ * attempts stop when the board is solved, proven to have no solution, the solve is cancelled,
+ * or the maximum number of attempts is used up.
+ *
+ * The steps, cutoff and time of every attempt are kept, so policies can be compared against a
+ * set of puzzles.
+ */
+public class RestartingSolver {
+    /**
+     * The policy used when none is given, a Luby schedule with a unit that lets most boards be
+     * solved within the first attempt.
+     */
+    public static final RestartPolicy DEFAULT_POLICY = RestartPolicy.luby(512);
+
+    private final CellModel model;
+    private final Solver.SolverType type;
+    private final RestartPolicy policy;
+    private final Random random;
+    private final List<AttemptStats> attempts = new ArrayList<>();
+    private SolverMetrics metrics = new SolverMetrics();
+    private SolverProgress progress;
+    private boolean unsolvable;
+    private int maxAttempts = Integer.MAX_VALUE;
+
+    /**
+     * @param random The random shared by every attempt, or null to seed one from the clock.
+     */
+    public RestartingSolver(CellModel model, Solver.SolverType type, RestartPolicy policy, Random random) {
+        this.model = model;
+        this.type = type;
+        this.policy = policy;
+        this.random = random != null ? random : new Random(System.currentTimeMillis());
+    }
+
+    /**
+     * Solves the model, restarting as the policy directs.
+     * @return The number of steps taken over all attempts.
+     */
+    public int solve(AtomicBoolean canCancel) {
+        attempts.clear();
+        unsolvable = false;
+        Solver solver = new Solver(model, type, random);
+        solver.setProgress(progress);
+        metrics = solver.getMetrics();
+        int steps = 0;
+        while (!model.isSolved() && !unsolvable && !canCancel.get() && attempts.size() < maxAttempts) {
+            int attempt = attempts.size() + 1;
+            if (progress != null) {
+                progress.startAttempt(attempt);
+            }
+            if (attempt > 1) {
+                metrics.restarts++;
+                model.resetCells();
+            }
+            int cutoff = policy.getCutoff(attempt);
+            long start = System.currentTimeMillis();
+            int taken = solver.solve(canCancel, cutoff);
+            steps += taken;
+            unsolvable = solver.isUnsolvable();
+            attempts.add(new AttemptStats(cutoff, taken, System.currentTimeMillis() - start, model.isSolved()));
+        }
+        return steps;
+    }
+
+    /**
+     * Sets how many attempts solve() makes before giving up with the board unsolved.  By
+     * default the attempts go on until the board is solved, proven to have no solution, or the
+     * solve is cancelled.
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be positive ["+maxAttempts+"]");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Returns true when the last call to solve() proved that the puzzle has no solution.
+     */
+    public boolean isUnsolvable() {
+        return unsolvable;
+    }
+
+    /**
+     * Returns the stats of every attempt of the last call to solve(), in order.
+     */
+    public List<AttemptStats> getAttempts() {
+        return Collections.unmodifiableList(attempts);
+    }
+
+    /**
+     * Sets where the attempts, steps and depth are published as the solve goes, or null for
+     * nowhere.
+     */
+    public void setProgress(SolverProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Returns the counters and phase times of the last call to solve(), over all its attempts.
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    public RestartPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * The outcome of a single attempt.
+     */
+    public static class AttemptStats {
+        private final int cutoff, steps;
+        private final long elapsed;
+        private final boolean solved;
+
+        public AttemptStats(int cutoff, int steps, long elapsed, boolean solved) {
+            this.cutoff = cutoff;
+            this.steps = steps;
+            this.elapsed = elapsed;
+            this.solved = solved;
+        }
+
+        /**
+         * The maximum number of steps the attempt was allowed.
+         */
+        public int getCutoff() {
+            return cutoff;
+        }
+
+        public int getSteps() {
+            return steps;
+        }
+
+        /**
+         * The time taken by the attempt in milliseconds.
+         */
+        public long getElapsedTime() {
+            return elapsed;
+        }
+
+        public boolean isSolved() {
+            return solved;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Counts the solutions of a board by exhaustive search, stopping as soon as the limit is
+ * reached.  A limit of 2 is a uniqueness check: a count of 1 means the board has exactly one
+ * solution.
+ *
+ * The search runs on the counter's own board, so the board being counted is never modified and
+ * its listeners are not notified.  Naked and hidden singles are propagated after every choice,
+ * the next cell is taken from a {@link CandidateIndex}, and choices are undone through the
+ * board's trail.  A counter keeps its board and search stacks between calls, so counting many
+ * boards with one counter does not allocate.  A counter is not thread safe.
+ */
+public class SolutionCounter {
+    private static final ThreadLocal<SolutionCounter> COUNTERS = new ThreadLocal<SolutionCounter>() {
+        @Override
+        protected SolutionCounter initialValue() {
+            return new SolutionCounter();
+        }
+    };
+
+    private final BitBoard board = new BitBoard();
+    private final CandidateIndex index = new CandidateIndex(board);
+    private final Propagator propagator = new Propagator(board);
+    private final int[] cells = new int[BitBoard.MAX_CELLS];
+    private final int[] untried = new int[BitBoard.MAX_CELLS];
+    private final int[] marks = new int[BitBoard.MAX_CELLS];
+    private final int[] solution = new int[BitBoard.MAX_CELLS];
+    private long steps;
+
+    /**
+     * Counts the solutions of the model's current values, up to the limit, with a counter kept
+     * for the calling thread.
+     */
+    public static int countSolutions(CellModel model, int limit) {
+        return COUNTERS.get().count(model.getBoard(), limit, null);
+    }
+
+    /**
+     * Counts the solutions of the board's current values, up to the limit.
+     * @return The number of solutions found, which is at most the limit.  A result of 0
+     *         without cancellation proves the board has no solution.
+     */
+    public int count(BitBoard start, int limit, AtomicBoolean canCancel) {
+        board.copyFrom(start);
+        index.rebuild(board);
+        board.setCandidateIndex(index);
+        steps = 0;
+        solution[0] = 0;
+        try {
+            if (limit <= 0 || board.hasDuplicates() || !propagator.propagateAll()) {
+                return 0;
+            }
+            return search(limit, canCancel);
+        } finally {
+            board.setCandidateIndex(null);
+            board.clearTrail();
+        }
+    }
+
+    /**
+     * Copies the first solution found by the last count into the given array.
+     * @return false if the last count found no solution.
+     */
+    public boolean getSolution(int[] values) {
+        if (solution[0] == 0) {
+            return false;
+        }
+        System.arraycopy(solution, 0, values, 0, BitBoard.MAX_CELLS);
+        return true;
+    }
+
+    /**
+     * Returns the number of values tried by the last count.
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    private int search(int limit, AtomicBoolean canCancel) {
+        int found = 0;
+        int depth = 0;
+        boolean descend = true;
+        board.mark();
+        while (canCancel == null || !canCancel.get()) {
+            if (descend) {
+                if (board.isSolved()) {
+                    if (found++ == 0) {
+                        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+                            solution[id] = board.getValue(id);
+                        }
+                    }
+                    if (found >= limit) {
+                        break;
+                    }
+                } else {
+                    int id = index.getFirst();
+                    cells[depth] = id;
+                    untried[depth] = board.getCandidates(id);
+                    marks[depth] = board.mark();
+                    depth++;
+                }
+            }
+            if (depth == 0) {
+                break;
+            }
+            int top = depth - 1;
+            board.undo(marks[top]);
+            if (untried[top] == 0) {
+                depth--;
+                descend = false;
+                continue;
+            }
+            int bit = Integer.lowestOneBit(untried[top]);
+            untried[top] &= ~bit;
+            steps++;
+            board.set(cells[top], BitBoard.toValue(bit));
+            descend = propagator.propagate(cells[top]);
+        }
+        return found;
+    }
+}
@@ -3,136 +3,315 @@ package com.sudoku.dj.sudokusolver.solver;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Random;
 import java.util.Comparator;
-import java.util.Set;
-import java.util.TreeSet;
-import java.util.Collection;
-import java.util.Deque;
-import java.util.ArrayDeque;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * The Solver contains logic to produce a solution to the provided Sudoku cell model.  For
- * an initial Sudoku puzzle, the number of available values per cell is determined, and each
- * cell is added to a priority queue, where the cells with the lowest number of possible values
- * are at the top of the queue.  Additionally, the cells are added to the queue in random order,
- * because adding randomness can sometimes allow the algorithm to produce puzzle solutions faster
- * (of course, sometimes the randomness produces solutions slower too).
- * 
- * A single call to solve() is intended to be an attempt to traverse through the model one time,
- * where the result will be that the puzzle is either solved, or that the algorithm hit a dead end.
+ * The Solver contains logic to produce a solution to the provided Sudoku cell model.  The
+ * search is a depth first search: at each step, an empty cell is chosen and its possible values
+ * are tried in random order, because adding randomness can sometimes
+ * allow the algorithm to produce puzzle solutions faster (of course, sometimes the randomness
+ * produces solutions slower too).
+ *
+ * Before the first cell is chosen, and after every value is set, naked and hidden singles are
+ * propagated with a {@link Propagator}, so values forced by the current board are filled in
+ * without branching.  Every change made below a choice is recorded on the model's trail, so
+ * backing out of a choice restores the exact earlier board without recomputing it.
+ *
+ * A single call to solve() is complete: the puzzle is either solved, or every choice has been
+ * tried and the puzzle is proven to have no solution from the values it started with.  A step
+ * limit can be given to cut an attempt short, so a {@link RestartingSolver} can start over with
+ * fresh random choices instead of waiting out an unlucky search.
+ *
+ * BACKTRACKING chooses the cell with the fewest possible values, read from a
+ * {@link CandidateIndex} that the board keeps up to date as values are set and undone, so no
+ * scan of the board is needed.  BOARD_BUILDER chooses the cell ranked first by its comparator.
+ *
+ * The DANCING_LINKS type does not choose cells; it runs an exact cover search with
+ * {@link DancingLinks}, which is also complete.
+ *
+ * Every solve adds its counters and phase times to the solver's {@link SolverMetrics}, so the
+ * metrics of a solver cover all of its calls to solve().
  */
 public class Solver {
     private CellModel model;
-    private PriorityQueue<InternalCell> unfilled;
-    private Deque<InternalCell> filled;
+    private Cell[] cells;
+    private Propagator propagator;
+    private final SolverType type;
+    private final Random random;
+    private boolean unsolvable, stepLimitReached;
+    private final SolverMetrics metrics = new SolverMetrics();
+    private SolverProgress progress;
 
-    public static enum SolverType { BOARD_BUILDER, BACKTRACKING };
+    // the choice stack: the cell chosen at each depth, the values not yet tried for it,
+    // and the trail position from before its value was set
+    private final int[] choices = new int[CellModel.MAX_CELLS];
+    private final int[] untried = new int[CellModel.MAX_CELLS];
+    private final int[] marks = new int[CellModel.MAX_CELLS];
 
-    private static Map<SolverType, Comparator<InternalCell>> comparators;
+    public static enum SolverType { BOARD_BUILDER, BACKTRACKING, DANCING_LINKS };
+
+    private static Map<SolverType, Comparator<Cell>> comparators;
 
     static {
-        Map<SolverType, Comparator<InternalCell>> m = new HashMap<>();
+        Map<SolverType, Comparator<Cell>> m = new HashMap<>();
         m.put(SolverType.BOARD_BUILDER, new CellGroupsComparator());
-        m.put(SolverType.BACKTRACKING, new DefaultComparator());
         comparators = Collections.unmodifiableMap(m);
     }
 
     public Solver(CellModel model, SolverType type) {
-        this.model = model;
-        Set<InternalCell> unfilledCells = buildCellSet(model.getUnfilledCells());
-        this.unfilled = new PriorityQueue<>(unfilledCells.size(), comparators.get(type));
-        this.unfilled.addAll(unfilledCells);
-        this.filled = new ArrayDeque<>();
+        this(model, type, null);
     }
 
-    private Set<InternalCell> buildCellSet(Collection<Cell> cells) {
-        Set<InternalCell> internals = new HashSet<>();
-        for (Cell c: cells) {
-            internals.add(new InternalCell(c));
+    /**
+     * Builds a solver that draws its random choices from the given random.  When the random is
+     * null, the randomized solver types seed their own from the clock, and DANCING_LINKS tries
+     * values in natural order.
+     */
+    public Solver(CellModel model, SolverType type, Random random) {
+        this.model = model;
+        this.type = type;
+        this.random = random;
+        if (type == SolverType.DANCING_LINKS) {
+            return;
         }
-        return internals;
+        this.cells = new Cell[CellModel.MAX_CELLS];
+        for (int i=0; i<CellModel.MAX_CELLS; i++) {
+            cells[i] = model.getCell(i);
+        }
+        this.propagator = new Propagator(model);
     }
 
-    private <T> Set<T> buildRandomizedSet(Collection<T> original) {
-        Set<T> values = new TreeSet<>(new Comparator<T>() {
-            private Random r = new Random(System.currentTimeMillis());
-
-            @Override
-            public int compare(T a, T b) {    
-                // store available values in a random order by manipulating the comparator
-                return r.nextBoolean() ? 1 : -1;
-            }
-        });
-        values.addAll(original);
-        return values;
+    private Random getRandom() {
+        return random != null ? random : new Random(System.currentTimeMillis());
     }
 
     /**
      * This will attempt to solve the puzzle by doing the following:
-     *   - Build a randomized set of available values.
-     *   - Grab one of the available values and set the cell, then check if the puzzle is
-     *     still solveable.
-     *   - If the puzzle is still solveable, then extract the Cell and check the next one.
-     *     Otherwise, attempt to use another available random value and repeat until either
-     *     one of the values makes the puzzle solveable or all values are exhausted.
-     *   - If a puzzle is still solveable, but the current cell is at a dead end, then
-     *     when allowed, the algorithm will randomly backtrack a few steps and try again.
+     *   - Propagate the values forced by the initial board.
+     *   - Choose the best ranked empty cell, and push it on the choice stack.
+     *   - Grab one of its untried values at random and set the cell, then propagate the values
+     *     it forces and check if the puzzle is still solveable.
+     *   - If the puzzle is still solveable, then choose the next cell.  Otherwise, undo back
+     *     to the mark taken before the value was set, and try another value.
+     *   - When a cell has no untried values left, pop it from the stack and try the next value
+     *     of the cell below it.
      *   - The loop will end when either:
-     *       - The queue runs out of cells.  If this happens, the puzzle is complete, or, 
-     *       - The puzzle is not solveable with the current cell values.  The algorithm has
-     *         hit a dead end.
-     * @return The number of steps taken in the attempt to solve the puzzle.
+     *       - The puzzle is solved, or,
+     *       - The stack is empty.  The puzzle has no solution from the starting values.
+     * @return The number of values tried in the attempt to solve the puzzle.
      */
     public int solve(AtomicBoolean canCancel) {
-        InternalCell current;
+        return solve(canCancel, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Solves like solve(), but gives up once the given number of values have been tried.  When
+     * the limit is reached, the board is returned to the values it started with.
+     * @return The number of values tried in the attempt to solve the puzzle.
+     */
+    public int solve(AtomicBoolean canCancel, int maxSteps) {
+        long searchStart = System.nanoTime();
+        try {
+            return search(canCancel, maxSteps);
+        } finally {
+            metrics.searchNanos += System.nanoTime() - searchStart;
+        }
+    }
+
+    private int search(AtomicBoolean canCancel, int maxSteps) {
+        unsolvable = false;
+        stepLimitReached = false;
+        if (type == SolverType.DANCING_LINKS) {
+            return solveExactCover(canCancel, maxSteps);
+        }
         int steps = 0;
-        Random r = new Random(System.currentTimeMillis());
-        while (!canCancel.get() && (current = unfilled.poll()) != null) {
-            // always add the current cell to the filled stack first
-            filled.addFirst(current);
-            current.addVisit();
-            steps++;
+        Random r = getRandom();
+        boolean startsFromLockedValues = hasOnlyLockedValues();
+        if (model.getBoard().hasDuplicates()) {
+            unsolvable = startsFromLockedValues;
+            return steps;
+        }
+        BitBoard board = model.getBoard();
+        long candidateUpdates = board.getCandidateUpdateCount();
+        long notifications = board.getNotificationCount();
+        long propagated = propagator.getAssignedCount();
+        CandidateIndex index = null;
+        if (type == SolverType.BACKTRACKING) {
+            index = new CandidateIndex(board);
+            board.setCandidateIndex(index);
+        }
+        int start = model.mark();
+        try {
+            if (!propagator.propagateAll()) {
+                // a contradiction from the locked cells alone means there is no solution
+                model.undo(start);
+                unsolvable = startsFromLockedValues;
+                return steps;
+            }
 
-            Set<Integer> originalSet = current.getCell().getAvailableValues();
-            if (originalSet.isEmpty()) {
-                // to backtrack: choose a random number of cells, in reverse order that values
-                // were set, and reset them to 0, then add back to the queue
-                doBacktrack(r.nextInt(filled.size()));
-            } else {
-                // for the current cell, randomly choose any available value
-                // then if the puzzle is solveable, add the cell to the filled stack
-                // and continue iterating through the queue
-                boolean solveableValueFound = false;
-                Set<Integer> availableValues = buildRandomizedSet(originalSet);
-                for (Integer value: availableValues) {
-                    model.setValue(current.getCell(), value);
-                    if (model.isSolveable()) {
-                        // accept the first legal value
-                        solveableValueFound = true;
-                        break;
+            int depth = 0;
+            boolean descend = true;
+            while (!canCancel.get()) {
+                if (descend) {
+                    if (model.isSolved()) {
+                        return steps;
                     }
+                    long chooseStart = System.nanoTime();
+                    int next = index != null ? index.getFirst() : chooseCell();
+                    metrics.chooseNanos += System.nanoTime() - chooseStart;
+                    if (next >= 0) {
+                        choices[depth] = next;
+                        untried[depth] = board.getCandidates(next);
+                        marks[depth] = model.mark();
+                        depth++;
+                        if (depth > metrics.maxDepth) {
+                            metrics.maxDepth = depth;
+                        }
+                    }
+                }
+                if (depth == 0) {
+                    // every choice has been tried
+                    model.undo(start);
+                    unsolvable = startsFromLockedValues;
+                    return steps;
                 }
 
-                if (!solveableValueFound) {
-                    doBacktrack(r.nextInt(filled.size()));
+                int top = depth - 1;
+                long undoStart = System.nanoTime();
+                model.undo(marks[top]);
+                metrics.undoNanos += System.nanoTime() - undoStart;
+                if (steps >= maxSteps) {
+                    model.undo(start);
+                    stepLimitReached = true;
+                    return steps;
+                }
+                if (untried[top] == 0) {
+                    depth--;
+                    metrics.backtracks++;
+                    descend = false;
+                    continue;
+                }
+                int bit = pickRandomBit(untried[top], r);
+                untried[top] &= ~bit;
+                steps++;
+                metrics.assignments++;
+                if (progress != null) {
+                    progress.update(steps, depth);
+                }
+                model.setValue(cells[choices[top]], BitBoard.toValue(bit));
+                long propagateStart = System.nanoTime();
+                descend = propagator.propagate(choices[top]);
+                metrics.propagateNanos += System.nanoTime() - propagateStart;
+                if (!descend) {
+                    metrics.deadEnds++;
                 }
             }
+            return steps;
+        } finally {
+            model.clearTrail();
+            board.setCandidateIndex(null);
+            metrics.candidateUpdates += board.getCandidateUpdateCount() - candidateUpdates;
+            metrics.notifications += board.getNotificationCount() - notifications;
+            metrics.propagatedValues += propagator.getAssignedCount() - propagated;
         }
-        return steps;
     }
 
-    private void doBacktrack(int totalToBacktrack) {
-        for (int i=0; i<totalToBacktrack; i++) {
-            InternalCell back = filled.removeFirst();
-            model.resetValue(back.getCell());
-            unfilled.add(back);
+    /**
+     * Returns the ID of the empty cell ranked first by the comparator for the solver type, or
+     * -1 when every cell is filled.
+     */
+    private int chooseCell() {
+        Comparator<Cell> comparator = comparators.get(type);
+        Cell best = null;
+        for (Cell cell: cells) {
+            if (!cell.isEmpty()) {
+                continue;
+            }
+            if (best == null || comparator.compare(cell, best) < 0) {
+                best = cell;
+            }
         }
+        return best != null ? best.getID() : -1;
+    }
+
+    private int pickRandomBit(int mask, Random r) {
+        int skip = r.nextInt(BitBoard.BIT_COUNT[mask]);
+        for (int i=0; i<skip; i++) {
+            mask &= mask - 1;
+        }
+        return Integer.lowestOneBit(mask);
+    }
+
+    private boolean hasOnlyLockedValues() {
+        for (Cell cell: model.getFilledCells()) {
+            if (!cell.isLocked()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true when the last call to solve() proved that the puzzle has no solution.
+     */
+    public boolean isUnsolvable() {
+        return unsolvable;
+    }
+
+    /**
+     * Sets where the solver publishes its steps and depth as it goes, or null for nowhere.
+     */
+    public void setProgress(SolverProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Returns the counters and phase times of every call to solve() so far.
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns true when the last call to solve() gave up after trying the maximum number of
+     * steps.
+     */
+    public boolean isStepLimitReached() {
+        return stepLimitReached;
+    }
+
+    /**
+     * Solves the locked cells of the model as an exact cover problem, then copies the solution
+     * into the unlocked cells.  Unlocked values left over from earlier attempts are ignored.
+     * @return The number of candidate rows tried by the search.
+     */
+    private int solveExactCover(AtomicBoolean canCancel, int maxSteps) {
+        int[] board = new int[CellModel.MAX_CELLS];
+        int[] solution = new int[CellModel.MAX_CELLS];
+        for (int i=0; i<CellModel.MAX_CELLS; i++) {
+            Cell cell = model.getCell(i);
+            board[i] = cell.isLocked() ? cell.getValue() : 0;
+        }
+        DancingLinks links = new DancingLinks(random);
+        links.setProgress(progress);
+        int found = links.solve(board, solution, 1, maxSteps, canCancel);
+        metrics.assignments += links.getUpdates();
+        if (found == 0) {
+            stepLimitReached = links.hasReachedMaxUpdates();
+            unsolvable = !canCancel.get() && !stepLimitReached;
+        } else {
+            for (int i=0; i<CellModel.MAX_CELLS; i++) {
+                Cell cell = model.getCell(i);
+                if (!cell.isLocked()) {
+                    model.setValue(cell, solution[i]);
+                }
+            }
+        }
+        return (int)links.getUpdates();
     }
 
     private String buildFilledBoard(String mask) {
@@ -151,67 +330,27 @@ public class Solver {
         return board;
     }
 
-    private static class DefaultComparator implements Comparator<InternalCell> {
-        @Override
-        public int compare(InternalCell a, InternalCell b) {
-            Integer aSize = Integer.valueOf(a.getCell().getAvailableValues().size() + a.getVisits());
-            Integer bSize = Integer.valueOf(b.getCell().getAvailableValues().size() + b.getVisits());
-            return aSize.compareTo(bSize);
-        }
-    }
-
     /**
      * This comparator ranks cells based on the number of empty cells in the associated groups.
-     * Unlike the default comparator, which ranks cells based on the number of possible legal values,
-     * this comparator is looking at the number of associated cells in the group that are unfilled.
+     * Unlike the candidate index used for backtracking, which ranks cells based on the number of
+     * possible legal values, this comparator is looking at the number of associated cells in the group that are unfilled.
      * A cell should rank higher using this comparator if it's horizontal, vertical, and cube groups
      * have fewer filled cells.
      */
-    private static class CellGroupsComparator implements Comparator<InternalCell> {
+    private static class CellGroupsComparator implements Comparator<Cell> {
 
         private int buildAvailableValuesCount(Cell c) {
             return (CellModel.MAX_CELLS_IN_GROUP * 3) -
-                    (getEmptyCellCount(c.getHorizontalGroup()) +
-                    getEmptyCellCount(c.getVerticalGroup()) +
-                    getEmptyCellCount(c.getCubeGroup()));
-        }
-
-        private int getEmptyCellCount(Group group) {
-            int count = 0;
-            for (Cell cell: group.getCells()) {
-                if (cell.isEmpty())
-                    count++;
-            }
-            return count;
+                    (c.getHorizontalGroup().getEmptyCellCount() +
+                    c.getVerticalGroup().getEmptyCellCount() +
+                    c.getCubeGroup().getEmptyCellCount());
         }
 
         @Override
-        public int compare(InternalCell a, InternalCell b) {
-            Integer aSize = Integer.valueOf(buildAvailableValuesCount(a.getCell()) + a.getVisits());
-            Integer bSize = Integer.valueOf(buildAvailableValuesCount(b.getCell()) + b.getVisits());
-            return aSize.compareTo(bSize);
-        }
-    }
-
-    private static class InternalCell {
-        private final Cell cell;
-        private int visits;
-
-        public InternalCell(Cell cell) {
-            this.cell = cell;
-            visits = 0;
-        }
-
-        public void addVisit() {
-            visits++;
-        }
-
-        public int getVisits() {
-            return visits;
-        }
-
-        public Cell getCell() {
-            return cell;
+        public int compare(Cell a, Cell b) {
+            int aSize = buildAvailableValuesCount(a);
+            int bSize = buildAvailableValuesCount(b);
+            return aSize < bSize ? -1 : (aSize == bSize ? 0 : 1);
         }
     }
 
@@ -0,0 +1,134 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+/**
+ * Counters and phase timings recorded while solving.  The fields are plain longs written only
+ * by the thread running the solver, so recording costs no more than an increment; metrics from
+ * several threads are combined with add() once their solves have finished.
+ *
+ * Times are in nanoseconds.  The choose, propagate and undo phases cover the cell choices,
+ * the propagation after each value and the undoing of values; the search time covers the whole
+ * of every solve, so whatever it has left over went to setting values and checking the board.
+ */
+public class SolverMetrics {
+    long assignments, propagatedValues, deadEnds, backtracks, restarts;
+    long candidateUpdates, notifications;
+    int maxDepth;
+    long chooseNanos, propagateNanos, undoNanos, searchNanos;
+
+    /**
+     * Adds the counters and times of other metrics to these.  The maximum depth is the larger
+     * of the two.
+     */
+    public void add(SolverMetrics other) {
+        assignments += other.assignments;
+        propagatedValues += other.propagatedValues;
+        deadEnds += other.deadEnds;
+        backtracks += other.backtracks;
+        restarts += other.restarts;
+        candidateUpdates += other.candidateUpdates;
+        notifications += other.notifications;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        chooseNanos += other.chooseNanos;
+        propagateNanos += other.propagateNanos;
+        undoNanos += other.undoNanos;
+        searchNanos += other.searchNanos;
+    }
+
+    public void reset() {
+        assignments = propagatedValues = deadEnds = backtracks = restarts = 0;
+        candidateUpdates = notifications = 0;
+        maxDepth = 0;
+        chooseNanos = propagateNanos = undoNanos = searchNanos = 0;
+    }
+
+    /**
+     * The number of values set by a choice of the search.  For DANCING_LINKS, the number of
+     * candidate rows tried.
+     */
+    public long getAssignments() {
+        return assignments;
+    }
+
+    /**
+     * The number of values forced by propagation rather than chosen.
+     */
+    public long getPropagatedValues() {
+        return propagatedValues;
+    }
+
+    /**
+     * The number of choices that propagation showed could not lead to a solution.
+     */
+    public long getDeadEnds() {
+        return deadEnds;
+    }
+
+    /**
+     * The number of times the search ran out of values for a cell and backed out of it.
+     */
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    /**
+     * The number of attempts started after the first.
+     */
+    public long getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * The deepest the choice stack grew.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * The number of candidate masks changed on the board, including those restored by undo.
+     */
+    public long getCandidateUpdates() {
+        return candidateUpdates;
+    }
+
+    /**
+     * The number of value changes the board passed on to its listener.
+     */
+    public long getNotifications() {
+        return notifications;
+    }
+
+    public long getChooseNanos() {
+        return chooseNanos;
+    }
+
+    public long getPropagateNanos() {
+        return propagateNanos;
+    }
+
+    public long getUndoNanos() {
+        return undoNanos;
+    }
+
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("assignments=").append(assignments)
+                .append(", propagated=").append(propagatedValues)
+                .append(", deadEnds=").append(deadEnds)
+                .append(", backtracks=").append(backtracks)
+                .append(", restarts=").append(restarts)
+                .append(", maxDepth=").append(maxDepth)
+                .append(", candidateUpdates=").append(candidateUpdates)
+                .append(", notifications=").append(notifications)
+                .append(", chooseMs=").append(chooseNanos / 1000000)
+                .append(", propagateMs=").append(propagateNanos / 1000000)
+                .append(", undoMs=").append(undoNanos / 1000000)
+                .append(", searchMs=").append(searchNanos / 1000000)
+                .toString();
+    }
+}
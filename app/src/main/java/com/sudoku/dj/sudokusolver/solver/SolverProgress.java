@@ -0,0 +1,52 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+/**
+ * The live position of a running solve, written by the solving thread and read by any other,
+ * such as a reporter sampling it every so often.  There is a single writer, so a step costs a
+ * plain write and a volatile write, with no lock and nothing allocated.
+ */
+public class SolverProgress {
+    private final long startNanos = System.nanoTime();
+    private volatile int attempts;
+    private volatile long steps;
+    // written before steps and read after it, so the volatile write of steps publishes it
+    private int depth;
+    // only touched by the writer
+    private long attemptStart;
+
+    /**
+     * Starts counting the steps of a new attempt on top of those already taken.
+     */
+    void startAttempt(int attempt) {
+        attemptStart = steps;
+        attempts = attempt;
+    }
+
+    /**
+     * Records the steps taken so far in the current attempt and the depth of the search.
+     */
+    void update(long attemptSteps, int depth) {
+        this.depth = depth;
+        this.steps = attemptStart + attemptSteps;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns the depth of the search at the last step.  Read it after getSteps() to see the
+     * depth of that step or a later one.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+}
@@ -1,25 +1,29 @@
 package com.sudoku.dj.sudokusolver.tasks;
 
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.widget.Toast;
+
 import com.sudoku.dj.sudokusolver.MainActivity;
-import com.sudoku.dj.sudokusolver.solver.Cell;
 import com.sudoku.dj.sudokusolver.solver.CellModel;
 import com.sudoku.dj.sudokusolver.solver.CellModelManager;
 import com.sudoku.dj.sudokusolver.solver.CurrentSolverStatsManager;
-import com.sudoku.dj.sudokusolver.solver.Group;
+import com.sudoku.dj.sudokusolver.solver.GridGenerator;
+import com.sudoku.dj.sudokusolver.solver.MaskStore;
+import com.sudoku.dj.sudokusolver.solver.PuzzleDigger;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.FileInputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.zip.ZipInputStream;
 
-public class MaskBoardGeneratorTask implements BackgroundTaskManager.BackgroundTaskWork<CellModel>  {
+public class MaskBoardGeneratorTask implements TaskScheduler.TaskWork<CellModel>  {
 
-    private static final int MAX_FILES = 10;
-    private static final int MAX_MASKS = 100000;
+    // stored uncompressed in the APK, see aaptOptions in build.gradle, so it can be read in place
+    private static final String MASKS_ASSET = "masks.bin";
+    private static final int MIN_FILLED_CELLS = 17;
+    private static final int FILLED_CELLS_RANGE = 15;
+    private static final long MAX_DIG_MILLIS = 1000;
 
     private final int filledCells;
     private Random random;
@@ -31,72 +35,49 @@ public class MaskBoardGeneratorTask implements BackgroundTaskManager.BackgroundT
         random = new Random(System.currentTimeMillis());
     }
 
-    @Override
-    public CellModel doWork(CellModel model) {
-        model.resetAllCells();
-        String mask = getMask();
-        Map<Character, Integer> map = buildMap();
-        buildUnsolvedBoard(model, mask, map);
-        return model;
-    }
-
-    private String getMask() {
-        int fileID = random.nextInt(MAX_FILES);
-        int lines = random.nextInt(MAX_MASKS);
-        try (ZipInputStream zip = new ZipInputStream(activity.getAssets().open("masks."+fileID+".zip"));
-             BufferedReader reader = new BufferedReader(new InputStreamReader(zip))) {
-            zip.getNextEntry(); // allows the file to be read
-            String mask = null;
-            for (int i=0; i<=lines; i++) {
-                mask = reader.readLine();
-            }
-            return mask;
-        } catch (Exception e) {
-            throw new RuntimeException("Unknown error reading file", e);
-        }
+    /**
+     * Picks the number of filled cells for a new board.
+     */
+    public static int randomFilledCells(Random random) {
+        return random.nextInt(FILLED_CELLS_RANGE) + MIN_FILLED_CELLS;
     }
 
-    private void buildUnsolvedBoard(CellModel model, String mask, Map<Character, Integer> map) {
-        int cellCount = 0;
-        final int maxAvailablePerGroup = 4;
-        while (cellCount < filledCells) {
-            int index = random.nextInt(CellModel.MAX_CELLS);
-            Cell target = model.getCell(index);
-            if (target.getValue() > 0 ||
-                    getEmptyCellCount(target.getHorizontalGroup()) < maxAvailablePerGroup ||
-                    getEmptyCellCount(target.getVerticalGroup()) < maxAvailablePerGroup ||
-                    getEmptyCellCount(target.getCubeGroup()) < maxAvailablePerGroup) {
-                continue;
+    @Override
+    public CellModel doWork(CellModel model, TaskHandle<CellModel> handle) {
+        model.resetAllCells();
+        List<Integer> values = buildPuzzle(activity.getAssets(), filledCells, random);
+        for (int i=0; i<CellModel.MAX_CELLS; i++) {
+            if (values.get(i) > 0) {
+                model.setValue(model.getCell(i), values.get(i));
             }
-            char c = mask.charAt(index);
-            Integer value = map.get(c);
-            model.setValue(target, value);
-            cellCount++;
         }
+        return model;
     }
 
-    private int getEmptyCellCount(Group group) {
-        int count = 0;
-        for (Cell cell: group.getCells()) {
-            if (cell.isEmpty())
-                count++;
+    /**
+     * Builds the values of a new board with a unique solution from a random mask, with 0 for
+     * the empty cells.  The board can keep more than filledCells clues, see {@link PuzzleDigger}.
+     */
+    public static List<Integer> buildPuzzle(AssetManager assets, int filledCells, Random random) {
+        int[] grid = new int[CellModel.MAX_CELLS];
+        new GridGenerator(GridGenerator.fromMask(getMask(assets, random)), random).next(grid);
+        int[] puzzle = new int[CellModel.MAX_CELLS];
+        new PuzzleDigger(random).dig(grid, filledCells, MAX_DIG_MILLIS, puzzle, null);
+        List<Integer> values = new ArrayList<>(CellModel.MAX_CELLS);
+        for (int value: puzzle) {
+            values.add(value);
         }
-        return count;
+        return values;
     }
 
-    private Map<Character, Integer> buildMap() {
-        // build a set containing all available values
-        List<Integer> available = new ArrayList<>();
-        for (int i=1; i<=CellModel.MAX_CELLS_IN_GROUP; i++) {
-            available.add(Integer.valueOf(i));
-        }
-
-        Map<Character, Integer> map = new HashMap<>();
-        for (char ch = 'A'; ch < 'J'; ch++) {
-            Integer value = available.remove(random.nextInt(available.size()));
-            map.put(ch, value);
+    static String getMask(AssetManager assets, Random random) {
+        try (AssetFileDescriptor fd = assets.openFd(MASKS_ASSET);
+             FileInputStream in = fd.createInputStream()) {
+            MaskStore store = new MaskStore(in.getChannel(), fd.getStartOffset());
+            return store.getMask(random.nextInt(store.getMaskCount()));
+        } catch (Exception e) {
+            throw new RuntimeException("Unknown error reading file", e);
         }
-        return map;
     }
 
     @Override
@@ -106,10 +87,16 @@ public class MaskBoardGeneratorTask implements BackgroundTaskManager.BackgroundT
 
     @Override
     public void onFinish(CellModel model) {
-        model.lockFilledCells();
-        CurrentSolverStatsManager.getInstance().clearAllStats();
+        // null if the task was cancelled or failed, which leaves the board untouched or empty
+        if (model != null) {
+            model.lockFilledCells();
+            CurrentSolverStatsManager.getInstance().clearAllStats();
+        }
         if (!activity.isFinishing() && !activity.isDestroyed()) {
             activity.returnToBoardFragment();
+            if (model == null) {
+                Toast.makeText(activity, "Could not build a new board", Toast.LENGTH_SHORT).show();
+            }
         }
     }
 }
@@ -0,0 +1,116 @@
+package com.sudoku.dj.sudokusolver.tasks;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+
+import com.sudoku.dj.sudokusolver.solver.CellModel;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Keeps a few boards ready to play, so a new board can usually be shown without waiting for one
+ * to be generated.  Boards are built from the masks one at a time, each as a background task of
+ * the {@link TaskScheduler}, and only while the pool has room, so the pool refills after a
+ * board has been taken.
+ *
+ * Boards are the values of the locked cells, with 0 for the empty cells.
+ */
+public class PuzzlePool {
+    private static final int CAPACITY = 4;
+
+    private static PuzzlePool instance;
+
+    private final BlockingQueue<List<Integer>> boards = new ArrayBlockingQueue<>(CAPACITY);
+    private final Random random = new Random(System.currentTimeMillis());
+    private AssetManager assets;
+    private TaskHandle<List<Integer>> pending;
+    private boolean started;
+
+    public static synchronized PuzzlePool getInstance() {
+        if (instance == null) {
+            instance = new PuzzlePool();
+        }
+        return instance;
+    }
+
+    private PuzzlePool() {
+    }
+
+    /**
+     * Starts filling the pool, if it is not already being filled.  Only the application context
+     * is kept, so an activity can safely start the pool.
+     */
+    public synchronized void start(Context context) {
+        if (started) {
+            return;
+        }
+        assets = context.getApplicationContext().getAssets();
+        started = true;
+        refill();
+    }
+
+    /**
+     * Stops filling the pool.  Boards already in the pool are kept.
+     */
+    public synchronized void stop() {
+        started = false;
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+        }
+    }
+
+    // one board at a time, so the background work never takes more than one pool thread
+    private synchronized void refill() {
+        if (!started || pending != null || boards.remainingCapacity() == 0) {
+            return;
+        }
+        pending = TaskScheduler.getInstance().submit(TaskScheduler.Kind.PREGENERATE, new TaskScheduler.TaskWork<List<Integer>>() {
+            @Override
+            public List<Integer> doWork(CellModel model, TaskHandle<List<Integer>> handle) {
+                int filledCells = MaskBoardGeneratorTask.randomFilledCells(random);
+                return MaskBoardGeneratorTask.buildPuzzle(assets, filledCells, random);
+            }
+
+            @Override
+            public void onUpdate(Integer... progress) {
+                // no-op
+            }
+
+            @Override
+            public void onFinish(List<Integer> board) {
+                built(board);
+            }
+        }, null);
+    }
+
+    private synchronized void built(List<Integer> board) {
+        pending = null;
+        if (board == null) {
+            // stopped, or the masks could not be read, so boards will be generated on demand
+            started = false;
+            return;
+        }
+        boards.offer(board);
+        refill();
+    }
+
+    /**
+     * Takes a ready board from the pool, or returns null if the pool is empty.
+     */
+    public List<Integer> poll() {
+        List<Integer> board = boards.poll();
+        refill();
+        return board;
+    }
+
+    /**
+     * Returns the number of boards ready to play.
+     */
+    public int size() {
+        return boards.size();
+    }
+}
@@ -1,29 +1,105 @@
 package com.sudoku.dj.sudokusolver.tasks;
 
+import android.os.Handler;
+import android.os.Looper;
+
+import com.sudoku.dj.sudokusolver.solver.Cell;
 import com.sudoku.dj.sudokusolver.solver.CellModel;
 import com.sudoku.dj.sudokusolver.solver.CurrentSolverStatsManager;
+import com.sudoku.dj.sudokusolver.solver.ParallelSearch;
+import com.sudoku.dj.sudokusolver.solver.PortfolioSolver;
+import com.sudoku.dj.sudokusolver.solver.RestartPolicy;
+import com.sudoku.dj.sudokusolver.solver.RestartingSolver;
 import com.sudoku.dj.sudokusolver.solver.Solver;
+import com.sudoku.dj.sudokusolver.solver.SolverMetrics;
+import com.sudoku.dj.sudokusolver.solver.SolverProgress;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class SolveTask implements TaskScheduler.TaskWork<SolveTask.SolveStats> {
+    private static final long REPORT_INTERVAL_MILLIS = 1000;
+    // restarts before a solver gives the board up to an exhaustive search
+    private static final int MAX_ATTEMPTS = 32;
 
-public class SolveTask implements BackgroundTaskManager.BackgroundTaskWork<SolveTask.SolveStats> {
     private int attempts, steps;
-    private long start, elapsed;
+    private long start, elapsedNanos;
+    private boolean solved, unsolvable;
+    private SolverMetrics metrics = new SolverMetrics();
 
     private final SolveTask.SolverListener solverListener;
+    private final Solver.SolverType solverType;
+    private final RestartPolicy restartPolicy;
+    private final int portfolioSize;
+    private List<RestartingSolver.AttemptStats> attemptStats = Collections.emptyList();
+    private TaskHandle<SolveStats> handle;
+    private volatile SolverProgress progress;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // samples the solver's counters on the main thread, so the solve never waits on a report
+    private final Runnable reporter = new Runnable() {
+        @Override
+        public void run() {
+            SolverProgress current = progress;
+            if (current == null) {
+                return;
+            }
+            solverListener.onLongRunningTask(buildProgressStats(current));
+            mainHandler.postDelayed(this, REPORT_INTERVAL_MILLIS);
+        }
+    };
 
     public SolveTask(final SolveTask.SolverListener solverListener) {
+        this(solverListener, Solver.SolverType.BACKTRACKING);
+    }
+
+    public SolveTask(final SolveTask.SolverListener solverListener, Solver.SolverType solverType) {
+        this(solverListener, solverType, RestartingSolver.DEFAULT_POLICY);
+    }
+
+    public SolveTask(final SolveTask.SolverListener solverListener, Solver.SolverType solverType, RestartPolicy restartPolicy) {
+        this.solverListener = solverListener;
+        this.solverType = solverType;
+        this.restartPolicy = restartPolicy;
+        this.portfolioSize = 0;
+    }
+
+    /**
+     * Builds a task that races a portfolio of solvers, one per thread of the shared worker pool,
+     * and keeps the first result.
+     */
+    public static SolveTask buildPortfolioTask(final SolveTask.SolverListener solverListener) {
+        return new SolveTask(solverListener, Runtime.getRuntime().availableProcessors());
+    }
+
+    private SolveTask(final SolveTask.SolverListener solverListener, int portfolioSize) {
         this.solverListener = solverListener;
+        this.solverType = null;
+        this.restartPolicy = null;
+        this.portfolioSize = portfolioSize;
     }
 
     @Override
-    public SolveStats doWork(CellModel model) {
-        start = System.currentTimeMillis();
+    public SolveStats doWork(CellModel model, TaskHandle<SolveStats> handle) {
+        this.handle = handle;
+        start = System.nanoTime();
+        // the board only needs to see checkpoints, not every step of the search
+        model.setQuiet(true);
+        progress = new SolverProgress();
+        mainHandler.postDelayed(reporter, REPORT_INTERVAL_MILLIS);
         try {
             solve(model);
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            progress = null;
+            mainHandler.removeCallbacks(reporter);
+            model.setQuiet(false);
         }
-        elapsed = System.currentTimeMillis() - start;
-        SolveStats current = new SolveStats() {
+        elapsedNanos = System.nanoTime() - start;
+        // only this solve; onFinish adds it to the board's totals
+        SolveStats current = new DetailedSolveStats() {
             @Override
             public int getAttempts() {
                 return attempts;
@@ -36,62 +112,145 @@ public class SolveTask implements BackgroundTaskManager.BackgroundTaskWork<Solve
 
             @Override
             public long getElapsedTime() {
-                return elapsed;
+                return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            }
+
+            @Override
+            public long getElapsedNanos() {
+                return elapsedNanos;
+            }
+
+            @Override
+            public SolverMetrics getMetrics() {
+                return metrics;
             }
         };
-        CurrentSolverStatsManager.getInstance().addStats(current);
-        SolveStats all = CurrentSolverStatsManager.getInstance().getSolveStats();
-        return all;
+        return current;
     }
 
     private void solve(CellModel model) {
         attempts = 0;
         steps = 0;
-        do
-        {
-            if (++attempts > 1) {
-                model.resetCells();
-//                if (attempts % 1000 == 0) {
-//                    publishProgress(attempts);
-//                }
+        unsolvable = false;
+        if (portfolioSize > 0) {
+            solvePortfolio(model);
+        } else {
+            solveWithRestarts(model);
+        }
+        if (!solved && !unsolvable && !handle.isCancelled()) {
+            finishWithSearch(model);
+        }
+    }
+
+    private void solveWithRestarts(CellModel model) {
+        RestartingSolver solver = new RestartingSolver(model, solverType, restartPolicy, null);
+        solver.setProgress(progress);
+        solver.setMaxAttempts(MAX_ATTEMPTS);
+        steps = solver.solve(handle.getCancelFlag());
+        metrics = solver.getMetrics();
+        attemptStats = solver.getAttempts();
+        attempts = attemptStats.size();
+        unsolvable = solver.isUnsolvable();
+        solved = model.isSolved();
+    }
+
+    /**
+     * Searches the locked values on every core, once the solver has given up.  A restarting
+     * solver only proves a board has no solution once a cutoff outgrows the whole search, so
+     * an unsolvable board is proven here rather than after endless restarts.  A solution found
+     * is copied into the model, so the board is not solved twice.
+     */
+    private void finishWithSearch(CellModel model) {
+        ParallelSearch search = new ParallelSearch(TaskScheduler.getInstance().getSearchPool());
+        ParallelSearch.Result result = search.countLockedSolutions(model, 1, handle.getCancelFlag());
+        // a cancelled search finds nothing without proving anything
+        if (handle.isCancelled()) {
+            return;
+        }
+        int[] solution = result.getSolution();
+        if (solution == null) {
+            unsolvable = true;
+            return;
+        }
+        for (int i=0; i<CellModel.MAX_CELLS; i++) {
+            Cell cell = model.getCell(i);
+            if (!cell.isLocked()) {
+                model.setValue(cell, solution[i]);
             }
-            Solver solver = new Solver(model, Solver.SolverType.BACKTRACKING);
-            steps += solver.solve(BackgroundTaskManager.getInstance().isCurrentTaskCancelled());
-        } while (!model.isSolved() && !BackgroundTaskManager.getInstance().isCurrentTaskCancelled().get());
+        }
+        solved = model.isSolved();
+    }
+
+    /**
+     * Returns the stats of each restart of the last solve, or an empty list for a portfolio.
+     */
+    public List<RestartingSolver.AttemptStats> getAttemptStats() {
+        return attemptStats;
+    }
+
+    private void solvePortfolio(CellModel model) {
+        attempts = portfolioSize;
+        PortfolioSolver portfolio = new PortfolioSolver(
+                TaskScheduler.getInstance().getWorkerExecutor(),
+                PortfolioSolver.buildMembers(portfolioSize, System.currentTimeMillis()));
+        portfolio.setProgress(progress);
+        portfolio.setMaxAttempts(MAX_ATTEMPTS);
+        steps = portfolio.solve(model, handle.getCancelFlag());
+        metrics = portfolio.getMetrics();
+        unsolvable = portfolio.isUnsolvable();
+        solved = model.isSolved();
     }
 
     @Override
     public void onUpdate(Integer... progress) {
-//        // this is not meant to be included in the list, instead, it is a
-//        // progress update specific to this thread instance
-//        SolveTask.SolveStats stats = new SolveTask.SolveStats() {
-//            @Override
-//            public int getAttempts() {
-//                return attempts;
-//            }
-//
-//            @Override
-//            public int getSteps() {
-//                return steps;
-//            }
-//
-//            @Override
-//            public long getElapsedTime() {
-//                return System.currentTimeMillis() - start;
-//            }
-//        };
-//        solverListener.onLongRunningTask(stats);
+        // no-op, the reporter samples the solver's progress instead
+    }
+
+    /**
+     * Copies the progress of the running solve.  These stats are of this solve only and are
+     * not included in the board's totals.
+     */
+    private static ProgressStats buildProgressStats(SolverProgress progress) {
+        // steps first, so the depth is of that step or a later one
+        final long steps = progress.getSteps();
+        final int depth = progress.getDepth();
+        final int attempts = progress.getAttempts();
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(progress.getElapsedNanos());
+        return new ProgressStats() {
+            @Override
+            public int getAttempts() {
+                return attempts;
+            }
+
+            @Override
+            public int getSteps() {
+                return (int)Math.min(steps, Integer.MAX_VALUE);
+            }
+
+            @Override
+            public long getElapsedTime() {
+                return elapsed;
+            }
+
+            @Override
+            public int getDepth() {
+                return depth;
+            }
+        };
     }
 
     @Override
     public void onFinish(SolveTask.SolveStats stats) {
-        if (steps == 0) {
+        // propagation alone can solve a board without taking any steps
+        if (stats == null || (steps == 0 && !solved && !unsolvable)) {
             return;
         }
         CurrentSolverStatsManager.getInstance().addStats(stats);
         SolveStats all = CurrentSolverStatsManager.getInstance().getSolveStats();
-        if (BackgroundTaskManager.getInstance().isCurrentTaskCancelled().get()) {
+        if (handle.isCancelled()) {
             solverListener.onPaused(all);
+        } else if (unsolvable) {
+            solverListener.onUnsolvable(all);
         } else {
             solverListener.onSolved(all);
         }
@@ -103,9 +262,26 @@ public class SolveTask implements BackgroundTaskManager.BackgroundTaskWork<Solve
         long getElapsedTime();
     }
 
+    /**
+     * Stats that also carry the solver's counters and phase times, for finding out where the
+     * time of a slow solve went.
+     */
+    public static interface DetailedSolveStats extends SolveStats {
+        long getElapsedNanos();
+        SolverMetrics getMetrics();
+    }
+
+    /**
+     * The progress of a running solve, as passed to onLongRunningTask().
+     */
+    public static interface ProgressStats extends SolveStats {
+        int getDepth();
+    }
+
     public static interface SolverListener {
         void onSolved(SolveStats stats);
         void onLongRunningTask(SolveStats stats);
         void onPaused(SolveStats stats);
+        void onUnsolvable(SolveStats stats);
     }
 }
@@ -0,0 +1,90 @@
+package com.sudoku.dj.sudokusolver.tasks;
+
+import android.content.res.AssetFileDescriptor;
+import android.widget.Toast;
+
+import com.sudoku.dj.sudokusolver.MainActivity;
+import com.sudoku.dj.sudokusolver.solver.CellModel;
+import com.sudoku.dj.sudokusolver.solver.CurrentSolverStatsManager;
+import com.sudoku.dj.sudokusolver.solver.DifficultyGrader;
+import com.sudoku.dj.sudokusolver.solver.PuzzleStore;
+
+import java.io.FileInputStream;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Loads a random puzzle of the requested level from the graded puzzle store.  If the store
+ * has no puzzles of the level, a new board is generated from the masks instead.
+ */
+public class StoredBoardTask implements TaskScheduler.TaskWork<CellModel> {
+
+    // stored uncompressed in the APK, see aaptOptions in build.gradle, so it can be read in place
+    private static final String PUZZLES_ASSET = "puzzles.bin";
+
+    private final DifficultyGrader.Level level;
+    private final Random random = new Random(System.currentTimeMillis());
+    private MainActivity activity;
+
+    public StoredBoardTask(DifficultyGrader.Level level, MainActivity activity) {
+        this.level = level;
+        this.activity = activity;
+    }
+
+    @Override
+    public CellModel doWork(CellModel model, TaskHandle<CellModel> handle) {
+        model.resetAllCells();
+        int[] values = getPuzzle();
+        if (values == null) {
+            List<Integer> generated = MaskBoardGeneratorTask.buildPuzzle(activity.getAssets(),
+                    MaskBoardGeneratorTask.randomFilledCells(random), random);
+            values = new int[CellModel.MAX_CELLS];
+            for (int i=0; i<CellModel.MAX_CELLS; i++) {
+                values[i] = generated.get(i);
+            }
+        }
+        for (int i=0; i<CellModel.MAX_CELLS; i++) {
+            if (values[i] > 0) {
+                model.setValue(model.getCell(i), values[i]);
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Returns the values of a random stored puzzle of the level, or null if there are none.
+     */
+    private int[] getPuzzle() {
+        try (AssetFileDescriptor fd = activity.getAssets().openFd(PUZZLES_ASSET);
+             FileInputStream in = fd.createInputStream()) {
+            PuzzleStore store = new PuzzleStore(in.getChannel(), fd.getStartOffset());
+            int count = store.getPuzzleCount(level);
+            if (count == 0) {
+                return null;
+            }
+            return store.getPuzzle(level, random.nextInt(count)).getValues();
+        } catch (Exception e) {
+            throw new RuntimeException("Unknown error reading file", e);
+        }
+    }
+
+    @Override
+    public void onUpdate(Integer... progress) {
+        // no-op
+    }
+
+    @Override
+    public void onFinish(CellModel model) {
+        // null if the task was cancelled or failed, which leaves the board untouched or empty
+        if (model != null) {
+            model.lockFilledCells();
+            CurrentSolverStatsManager.getInstance().clearAllStats();
+        }
+        if (!activity.isFinishing() && !activity.isDestroyed()) {
+            activity.returnToBoardFragment();
+            if (model == null) {
+                Toast.makeText(activity, "Could not build a new board", Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.sudoku.dj.sudokusolver.tasks;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.sudoku.dj.sudokusolver.solver.CellModel;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A task queued with the {@link TaskScheduler}.  The handle is the task's cancellation flag,
+ * which the work checks or passes on to a solver, and its channel for reporting progress to
+ * the main thread.
+ */
+public class TaskHandle<T> {
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+
+    private final TaskScheduler scheduler;
+    private final TaskScheduler.Kind kind;
+    private final TaskScheduler.Priority priority;
+    private final long sequence;
+    private final TaskScheduler.TaskWork<T> work;
+    private final CellModel model;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicReference<Integer[]> progress = new AtomicReference<>();
+    private volatile boolean done;
+
+    final Runnable execution = new Execution();
+
+    TaskHandle(TaskScheduler scheduler, TaskScheduler.Kind kind, TaskScheduler.Priority priority,
+               long sequence, TaskScheduler.TaskWork<T> work, CellModel model) {
+        this.scheduler = scheduler;
+        this.kind = kind;
+        this.priority = priority;
+        this.sequence = sequence;
+        this.work = work;
+        this.model = model;
+    }
+
+    public TaskScheduler.Kind getKind() {
+        return kind;
+    }
+
+    public TaskScheduler.Priority getPriority() {
+        return priority;
+    }
+
+    public TaskScheduler.TaskWork<T> getWork() {
+        return work;
+    }
+
+    CellModel getModel() {
+        return model;
+    }
+
+    /**
+     * Asks the task to stop.  Work that has not started is skipped, though onFinish() is still
+     * called with a null result.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Returns the flag set by cancel(), for work that passes it on to a solver.
+     */
+    public AtomicBoolean getCancelFlag() {
+        return cancelled;
+    }
+
+    /**
+     * Returns true once onFinish() has returned.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Reports progress to the work's onUpdate() on the main thread.  Reports made faster than
+     * the main thread takes them are merged, so only the latest is delivered.
+     */
+    public void publishProgress(Integer... values) {
+        if (progress.getAndSet(values) == null) {
+            MAIN.post(deliverProgress);
+        }
+    }
+
+    private final Runnable deliverProgress = new Runnable() {
+        @Override
+        public void run() {
+            Integer[] values = progress.getAndSet(null);
+            if (values != null && !done) {
+                work.onUpdate(values);
+            }
+        }
+    };
+
+    private class Execution implements Runnable, Comparable<Execution> {
+        @Override
+        public void run() {
+            T result = null;
+            if (!cancelled.get()) {
+                Process.setThreadPriority(priority == TaskScheduler.Priority.BACKGROUND ?
+                        Process.THREAD_PRIORITY_BACKGROUND : Process.THREAD_PRIORITY_DEFAULT);
+                try {
+                    result = work.doWork(model, TaskHandle.this);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            final T finalResult = result;
+            MAIN.post(new Runnable() {
+                @Override
+                public void run() {
+                    finish(finalResult);
+                }
+            });
+        }
+
+        @Override
+        public int compareTo(Execution other) {
+            int order = priority.compareTo(other.getHandle().priority);
+            if (order != 0) {
+                return order;
+            }
+            return Long.compare(sequence, other.getHandle().sequence);
+        }
+
+        private TaskHandle<?> getHandle() {
+            return TaskHandle.this;
+        }
+    }
+
+    private void finish(T result) {
+        try {
+            work.onFinish(result);
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            done = true;
+            scheduler.finished(this);
+        }
+    }
+}
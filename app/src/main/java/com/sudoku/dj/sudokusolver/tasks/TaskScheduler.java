@@ -0,0 +1,199 @@
+package com.sudoku.dj.sudokusolver.tasks;
+
+import com.sudoku.dj.sudokusolver.solver.CellModel;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the application's tasks on one bounded pool of threads.  Waiting tasks start in
+ * priority order, so a solve the user is waiting for goes ahead of queued background work, and
+ * each task runs at the thread priority of its {@link Priority}.  The pool keeps its threads,
+ * so tasks do not start threads of their own.
+ *
+ * Only one task at a time may work on a given {@link CellModel}.
+ */
+public class TaskScheduler {
+    private static final int POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The order in which waiting tasks start.
+     */
+    public enum Priority {
+        INTERACTIVE, NORMAL, BACKGROUND
+    }
+
+    /**
+     * What a task does, so the app can ask whether such a task is running.
+     */
+    public enum Kind {
+        NEW_BOARD(Priority.INTERACTIVE),
+        SOLVE(Priority.INTERACTIVE),
+        PREGENERATE(Priority.BACKGROUND);
+
+        private final Priority priority;
+
+        Kind(Priority priority) {
+            this.priority = priority;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+    }
+
+    private static TaskScheduler instance;
+
+    private final ThreadPoolExecutor executor;
+    private final Set<TaskHandle<?>> active = Collections.newSetFromMap(new ConcurrentHashMap<TaskHandle<?>, Boolean>());
+    private final AtomicLong sequence = new AtomicLong();
+    private ExecutorService workerExecutor;
+    private ForkJoinPool searchPool;
+
+    public static synchronized TaskScheduler getInstance() {
+        if (instance == null) {
+            instance = new TaskScheduler();
+        }
+        return instance;
+    }
+
+    private TaskScheduler() {
+        // the queue orders tasks by their handles, which is why tasks go through execute()
+        // rather than submit(), whose futures cannot be compared
+        this.executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), buildThreadFactory("task-worker"));
+    }
+
+    private static ThreadFactory buildThreadFactory(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Queues the work at the priority of its kind.
+     */
+    public <T> TaskHandle<T> submit(Kind kind, TaskWork<T> work, CellModel model) {
+        return submit(kind, kind.getPriority(), work, model);
+    }
+
+    /**
+     * Queues the work.  Its result is passed to onFinish() on the main thread.
+     * @param model The board the work changes, or null if it changes none.
+     */
+    public <T> TaskHandle<T> submit(Kind kind, Priority priority, TaskWork<T> work, CellModel model) {
+        TaskHandle<T> handle = new TaskHandle<>(this, kind, priority, sequence.getAndIncrement(), work, model);
+        synchronized (active) {
+            if (model != null && findTask(model) != null) {
+                throw new RuntimeException("Task is currently running");
+            }
+            active.add(handle);
+        }
+        executor.execute(handle.execution);
+        return handle;
+    }
+
+    private TaskHandle<?> findTask(CellModel model) {
+        for (TaskHandle<?> handle: active) {
+            if (handle.getModel() == model) {
+                return handle;
+            }
+        }
+        return null;
+    }
+
+    void finished(TaskHandle<?> handle) {
+        synchronized (active) {
+            active.remove(handle);
+        }
+    }
+
+    /**
+     * Returns true if a task of the kind is waiting or running.  A task counts as running until
+     * its onFinish() returns.
+     */
+    public boolean isRunning(Kind kind) {
+        return getTask(kind) != null;
+    }
+
+    /**
+     * Returns true if any task is working on the model.
+     */
+    public boolean isRunning(CellModel model) {
+        synchronized (active) {
+            return findTask(model) != null;
+        }
+    }
+
+    /**
+     * Returns a waiting or running task of the kind, or null if there is none.
+     */
+    public TaskHandle<?> getTask(Kind kind) {
+        for (TaskHandle<?> handle: active) {
+            if (handle.getKind() == kind) {
+                return handle;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Asks every task of the kind to stop.
+     */
+    public void cancel(Kind kind) {
+        for (TaskHandle<?> handle: active) {
+            if (handle.getKind() == kind) {
+                handle.cancel();
+            }
+        }
+    }
+
+    /**
+     * Returns the shared pool used by tasks that split their work across threads, with one
+     * thread per available processor.  It is apart from the task pool, since a task waiting on
+     * work queued behind it in its own pool could wait forever.
+     */
+    public synchronized ExecutorService getWorkerExecutor() {
+        if (workerExecutor == null) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            workerExecutor = Executors.newFixedThreadPool(threads, buildThreadFactory("solver-worker"));
+        }
+        return workerExecutor;
+    }
+
+    /**
+     * Returns the shared fork/join pool used by exhaustive searches, with one thread per
+     * available processor.  Like the worker pool, it is apart from the task pool.
+     */
+    public synchronized ForkJoinPool getSearchPool() {
+        if (searchPool == null) {
+            searchPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return searchPool;
+    }
+
+    /**
+     * The work of a task.  doWork() runs on a pool thread; onUpdate() and onFinish() run on the
+     * main thread.  onFinish() is passed null if the task was cancelled before it started or
+     * doWork() threw, so it must not assume a result.
+     */
+    public static interface TaskWork<T> {
+        T doWork(CellModel model, TaskHandle<T> handle);
+        void onUpdate(Integer... progress);
+        void onFinish(T result);
+    }
+}
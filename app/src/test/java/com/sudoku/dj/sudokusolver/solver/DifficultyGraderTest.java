@@ -0,0 +1,173 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Grades puzzles whose hardest technique is known.  Each puzzle has a unique solution, so a
+ * grader that solves it never removed a candidate it should have kept.
+ */
+public class DifficultyGraderTest {
+    // the row of the first cell only has room for 1, 2 and 3, but 1 and 2 both only fit there
+    private static final String HIDDEN_SINGLE_CONFLICT =
+            "004506789000000000000000000010000000020000000000010000000020000000000000000000000";
+
+    private final DifficultyGrader grader = new DifficultyGrader();
+
+    private void assertHardest(DifficultyGrader.Technique technique, String puzzle) {
+        grader.grade(SolutionCounterTest.parse(puzzle));
+        assertTrue(technique+" puzzle was not solved", grader.isSolved());
+        assertEquals(technique, grader.getHardest());
+        assertTrue(grader.getCount(technique) > 0);
+        assertEquals(technique.getWeight(), grader.getScore());
+        assertEquals(technique.getLevel(), grader.getLevel());
+    }
+
+    @Test
+    public void hiddenSingle() {
+        assertHardest(DifficultyGrader.Technique.HIDDEN_SINGLE,
+                "800000000000401302007200000000000001000020030369040070000000003070060090236000800");
+    }
+
+    @Test
+    public void nakedSingle() {
+        assertHardest(DifficultyGrader.Technique.NAKED_SINGLE,
+                "000200000090500000805047000030850600050700009007000801001000020600302100009000760");
+    }
+
+    @Test
+    public void pointing() {
+        assertHardest(DifficultyGrader.Technique.POINTING,
+                "000070610000209004740306020030000000000600200205807030360500087900000000070000900");
+    }
+
+    @Test
+    public void claiming() {
+        assertHardest(DifficultyGrader.Technique.CLAIMING,
+                "500060090008000000090500087000076100100000000806900400600001005000040070205000000");
+    }
+
+    @Test
+    public void nakedPair() {
+        assertHardest(DifficultyGrader.Technique.NAKED_PAIR,
+                "009004001000000060185000300030150000007006102250000000900000070008040000300000609");
+    }
+
+    @Test
+    public void xWing() {
+        assertHardest(DifficultyGrader.Technique.X_WING,
+                "000160042000000031030000500000040010608900400570000000060310000000005708000000000");
+    }
+
+    @Test
+    public void hiddenPair() {
+        assertHardest(DifficultyGrader.Technique.HIDDEN_PAIR,
+                "300000200000200030800600000004082006000300005060040702031490000509000000002103900");
+    }
+
+    @Test
+    public void nakedTriple() {
+        assertHardest(DifficultyGrader.Technique.NAKED_TRIPLE,
+                "370800004009070080052900300030000040080006003060100000000020060020040001006000058");
+    }
+
+    @Test
+    public void swordfish() {
+        assertHardest(DifficultyGrader.Technique.SWORDFISH,
+                "009000100030000000007589000060010400008763000002400000800005076040006000000000300");
+    }
+
+    @Test
+    public void hiddenTriple() {
+        assertHardest(DifficultyGrader.Technique.HIDDEN_TRIPLE,
+                "054760039070000040008050100000006000000080024000200007400000090167390000803000700");
+    }
+
+    @Test
+    public void xyWing() {
+        assertHardest(DifficultyGrader.Technique.XY_WING,
+                "000600280803000000007000519740036000010070006080100005600028000000750000001000900");
+    }
+
+    @Test
+    public void nakedQuad() {
+        assertHardest(DifficultyGrader.Technique.NAKED_QUAD,
+                "060001009000086050500090620000000001800004000020010437080043000702000300000020060");
+    }
+
+    @Test
+    public void jellyfish() {
+        assertHardest(DifficultyGrader.Technique.JELLYFISH,
+                "300086000000400010000350008000020000100608093600000050020000901000003006001502000");
+    }
+
+    @Test
+    public void hiddenQuad() {
+        // a hidden quad is only needed when no smaller naked subset does the same, so it is
+        // rarely the last technique; this puzzle needs one but is not solved by logic alone
+        grader.grade(SolutionCounterTest.parse(
+                "859014000000206000000000000023008004900001300700600089000007060001000005060050041"));
+        assertTrue(grader.isValid());
+        assertTrue(grader.getCount(DifficultyGrader.Technique.HIDDEN_QUAD) > 0);
+    }
+
+    @Test
+    public void xyChain() {
+        assertHardest(DifficultyGrader.Technique.XY_CHAIN,
+                "700000600080000090000009005000105003800300700006900010300007800009500000100604000");
+    }
+
+    @Test
+    public void xWingWithHiddenPair_isGradedHard() {
+        // the hidden pair is the heavier technique, but the X-wing is the harder level
+        grader.grade(SolutionCounterTest.parse(
+                "400230590060970000000000003008020350040000000900800000600050070003009006000000200"));
+        assertTrue(grader.isSolved());
+        assertEquals(DifficultyGrader.Technique.HIDDEN_PAIR, grader.getHardest());
+        assertTrue(grader.getCount(DifficultyGrader.Technique.X_WING) > 0);
+        assertEquals(DifficultyGrader.Technique.HIDDEN_PAIR.getWeight(), grader.getScore());
+        assertEquals(DifficultyGrader.Level.HARD, grader.getLevel());
+    }
+
+    @Test
+    public void solvedBoard_needsNoTechnique() {
+        grader.grade(SolutionCounterTest.parse(SolutionCounterTest.UNIQUE_SOLUTION));
+        assertTrue(grader.isSolved());
+        assertNull(grader.getHardest());
+        assertEquals(0, grader.getScore());
+    }
+
+    @Test
+    public void hiddenSingles_inOneCell_areAContradiction() {
+        grader.grade(SolutionCounterTest.parse(HIDDEN_SINGLE_CONFLICT));
+        assertFalse(grader.isValid());
+        assertFalse(grader.isSolved());
+        assertEquals(DifficultyGrader.UNSOLVED_SCORE, grader.getScore());
+    }
+
+    @Test
+    public void conflictingGivens_areInvalid() {
+        grader.grade(SolutionCounterTest.parse(
+                "530075000600195000098000060800060003400803001700020006060000280000419005000080079"));
+        assertFalse(grader.isValid());
+        assertEquals(DifficultyGrader.Level.EXTREME, grader.getLevel());
+    }
+
+    @Test
+    public void uniquePuzzles_neverLeadToAContradiction() {
+        Random random = new Random(7);
+        GridGenerator generator = new GridGenerator(GridGenerator.patternGrid(), random);
+        PuzzleDigger digger = new PuzzleDigger(random);
+        int[] grid = new int[BitBoard.MAX_CELLS];
+        int[] puzzle = new int[BitBoard.MAX_CELLS];
+        for (int i=0; i<200; i++) {
+            generator.next(grid);
+            digger.dig(grid, 17, 10000, puzzle, null);
+            grader.grade(puzzle);
+            assertTrue("Puzzle ["+i+"] led to a contradiction", grader.isValid());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that dug puzzles keep a unique solution, which is the board they were dug from.
+ */
+public class PuzzleDiggerTest {
+    private static final long SEED = 42;
+    private static final int PUZZLES = 20;
+    private static final int TARGET_CLUES = 22;
+    // long enough that a dig is never cut short, so the same seed digs the same puzzles
+    private static final long MAX_DIG_MILLIS = 10000;
+
+    @Test
+    public void dig_keepsAUniqueSolution() {
+        Random random = new Random(SEED);
+        GridGenerator generator = new GridGenerator(GridGenerator.patternGrid(), random);
+        PuzzleDigger digger = new PuzzleDigger(random);
+        SolutionCounter counter = new SolutionCounter();
+        int[] grid = new int[BitBoard.MAX_CELLS];
+        int[] puzzle = new int[BitBoard.MAX_CELLS];
+        int[] solution = new int[BitBoard.MAX_CELLS];
+        for (int i=0; i<PUZZLES; i++) {
+            generator.next(grid);
+            int clues = digger.dig(grid, TARGET_CLUES, MAX_DIG_MILLIS, puzzle, null);
+            assertTrue("Puzzle ["+i+"] kept too few clues", clues >= TARGET_CLUES);
+
+            BitBoard board = new BitBoard();
+            int filled = 0;
+            for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+                if (puzzle[id] != 0) {
+                    // every clue is a value of the grid it was dug from
+                    assertEquals("Puzzle ["+i+"] cell ["+id+"]", grid[id], puzzle[id]);
+                    board.set(id, puzzle[id]);
+                    filled++;
+                }
+            }
+            assertEquals("Puzzle ["+i+"] clues", clues, filled);
+            assertEquals("Puzzle ["+i+"] solutions", 1, counter.count(board, 2, null));
+            assertTrue(counter.getSolution(solution));
+            assertArrayEquals("Puzzle ["+i+"] was not solved to its grid", grid, solution);
+        }
+    }
+
+    @Test
+    public void dig_isRepeatableForASeed() {
+        int[] grid = new int[BitBoard.MAX_CELLS];
+        new GridGenerator(GridGenerator.patternGrid(), new Random(SEED)).next(grid);
+        int[] first = new int[BitBoard.MAX_CELLS];
+        int[] second = new int[BitBoard.MAX_CELLS];
+        new PuzzleDigger(new Random(SEED)).dig(grid, TARGET_CLUES, MAX_DIG_MILLIS, first, null);
+        new PuzzleDigger(new Random(SEED)).dig(grid, TARGET_CLUES, MAX_DIG_MILLIS, second, null);
+        assertArrayEquals(first, second);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dig_rejectsAnUnfilledBoard() {
+        int[] grid = GridGenerator.patternGrid();
+        grid[0] = 0;
+        new PuzzleDigger(new Random(SEED)).dig(grid, TARGET_CLUES, MAX_DIG_MILLIS, new int[BitBoard.MAX_CELLS], null);
+    }
+}
@@ -0,0 +1,111 @@
+package com.sudoku.dj.sudokusolver.solver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that SolutionCounter and DancingLinks agree on boards with one, several and no
+ * solutions.
+ */
+public class SolutionCounterTest {
+    static final String UNIQUE =
+            "530070000600195000098000060800060003400803001700020006060000280000419005000080079";
+    static final String UNIQUE_SOLUTION =
+            "534678912672195348198342567859761423426853791713924856961537284287419635345286179";
+    // UNIQUE without the 8 of the third row, which leaves 8 solutions
+    private static final String MULTIPLE =
+            "530070000600195000090000060800060003400803001700020006060000280000419005000080079";
+    private static final int MULTIPLE_COUNT = 8;
+    // two 5s in the first row
+    private static final String CONFLICTING =
+            "530075000600195000098000060800060003400803001700020006060000280000419005000080079";
+    // no two givens conflict, but the first cell can only be 9 and its column already has one
+    private static final String UNSOLVABLE =
+            "012345678000000000000000000000000000000000000900000000000000000000000000000000000";
+
+    static int[] parse(String puzzle) {
+        int[] values = new int[BitBoard.MAX_CELLS];
+        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+            values[id] = puzzle.charAt(id) - '0';
+        }
+        return values;
+    }
+
+    private static BitBoard buildBoard(String puzzle) {
+        BitBoard board = new BitBoard();
+        int[] values = parse(puzzle);
+        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+            board.set(id, values[id]);
+        }
+        return board;
+    }
+
+    private static int countWithDancingLinks(String puzzle, int limit, int[] solution) {
+        return new DancingLinks().solve(parse(puzzle), solution, limit, null);
+    }
+
+    @Test
+    public void uniquePuzzle_hasOneSolution() {
+        SolutionCounter counter = new SolutionCounter();
+        assertEquals(1, counter.count(buildBoard(UNIQUE), 2, null));
+        int[] solution = new int[BitBoard.MAX_CELLS];
+        assertTrue(counter.getSolution(solution));
+        assertArrayEquals(parse(UNIQUE_SOLUTION), solution);
+
+        int[] linksSolution = new int[BitBoard.MAX_CELLS];
+        assertEquals(1, countWithDancingLinks(UNIQUE, 2, linksSolution));
+        assertArrayEquals(parse(UNIQUE_SOLUTION), linksSolution);
+    }
+
+    @Test
+    public void multiplePuzzle_countStopsAtLimit() {
+        SolutionCounter counter = new SolutionCounter();
+        assertEquals(2, counter.count(buildBoard(MULTIPLE), 2, null));
+        assertEquals(2, countWithDancingLinks(MULTIPLE, 2, new int[BitBoard.MAX_CELLS]));
+    }
+
+    @Test
+    public void multiplePuzzle_countsEverySolution() {
+        SolutionCounter counter = new SolutionCounter();
+        assertEquals(MULTIPLE_COUNT, counter.count(buildBoard(MULTIPLE), 100, null));
+        assertEquals(MULTIPLE_COUNT, countWithDancingLinks(MULTIPLE, 100, new int[BitBoard.MAX_CELLS]));
+    }
+
+    @Test
+    public void conflictingGivens_haveNoSolution() {
+        SolutionCounter counter = new SolutionCounter();
+        assertEquals(0, counter.count(buildBoard(CONFLICTING), 2, null));
+        assertFalse(counter.getSolution(new int[BitBoard.MAX_CELLS]));
+        assertEquals(0, countWithDancingLinks(CONFLICTING, 2, new int[BitBoard.MAX_CELLS]));
+    }
+
+    @Test
+    public void unsolvablePuzzle_hasNoSolution() {
+        SolutionCounter counter = new SolutionCounter();
+        assertEquals(0, counter.count(buildBoard(UNSOLVABLE), 2, null));
+        assertFalse(counter.getSolution(new int[BitBoard.MAX_CELLS]));
+        assertEquals(0, countWithDancingLinks(UNSOLVABLE, 2, new int[BitBoard.MAX_CELLS]));
+    }
+
+    @Test
+    public void count_doesNotChangeTheBoard() {
+        BitBoard board = buildBoard(MULTIPLE);
+        new SolutionCounter().count(board, 100, null);
+        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+            assertEquals(parse(MULTIPLE)[id], board.getValue(id));
+        }
+    }
+
+    @Test
+    public void countSolutions_usesTheModelValues() {
+        CellModel model = new CellModel();
+        int[] values = parse(UNIQUE);
+        for (int id=0; id<BitBoard.MAX_CELLS; id++) {
+            if (values[id] > 0) {
+                model.setValue(model.getCell(id), values[id]);
+            }
+        }
+        assertEquals(1, SolutionCounter.countSolutions(model, 2));
+    }
+}
@@ -0,0 +1,68 @@
+package com.sudoku.dj.sudokusolver.batch;
+
+import com.sudoku.dj.sudokusolver.solver.Solver;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Solves a file of puzzles from the command line:
+ *
+ *   batch <input> <output|-> [--threads n] [--chunk n] [--type SOLVER_TYPE] [--unique]
+ *
+ * The output is written to standard out when given as '-', and a summary is printed to
+ * standard error once every puzzle is solved.
+ */
+public class BatchSolveMain {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            usage();
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunkSize = BatchSolver.DEFAULT_CHUNK_SIZE;
+        Solver.SolverType type = Solver.SolverType.DANCING_LINKS;
+        int solutionLimit = 1;
+        for (int i=2; i<args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--unique")) {
+                solutionLimit = 2;
+            } else if (i + 1 < args.length && arg.equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (i + 1 < args.length && arg.equals("--chunk")) {
+                chunkSize = Integer.parseInt(args[++i]);
+            } else if (i + 1 < args.length && arg.equals("--type")) {
+                type = Solver.SolverType.valueOf(args[++i]);
+            } else {
+                usage();
+                return;
+            }
+        }
+
+        BatchSolver solver = new BatchSolver(threads, chunkSize, type, solutionLimit);
+        boolean toStandardOut = args[1].equals("-");
+        OutputStream out = toStandardOut ? System.out : new FileOutputStream(args[1]);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "US-ASCII"), BUFFER_SIZE);
+        try {
+            BatchSolver.Summary summary = solver.solve(new File(args[0]), writer);
+            System.err.println(summary);
+        } finally {
+            if (toStandardOut) {
+                writer.flush();
+            } else {
+                writer.close();
+            }
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: batch <input> <output|-> [--threads n] [--chunk n] [--type SOLVER_TYPE] [--unique]");
+    }
+}
@@ -0,0 +1,268 @@
+package com.sudoku.dj.sudokusolver.batch;
+
+import com.sudoku.dj.sudokusolver.solver.CellModel;
+import com.sudoku.dj.sudokusolver.solver.DancingLinks;
+import com.sudoku.dj.sudokusolver.solver.RestartingSolver;
+import com.sudoku.dj.sudokusolver.solver.Solver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves every puzzle of a file on a pool of worker threads.  Puzzles are read in chunks on
+ * the calling thread and each chunk is solved by a worker.  The results are written in input
+ * order, one line per puzzle:
+ *
+ *   solution,status,steps,micros
+ *
+ * where the solution is the 81 values of the first solution found, or the puzzle itself when
+ * there is none, with '.' for empty cells.  Only a bounded number of chunks are in flight at once, so memory use does not
+ * grow with the size of the file.
+ *
+ * DANCING_LINKS puzzles are solved with a {@link DancingLinks} kept per worker thread, which can
+ * also count solutions to tell unique puzzles from puzzles with several solutions.  The other
+ * solver types solve through a cell model with the default restart policy.
+ */
+public class BatchSolver {
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+    private static final long SEED = 20180529L;
+
+    /**
+     * The outcome of a single puzzle.
+     */
+    public static enum Status { SOLVED, UNIQUE, MULTIPLE, UNSOLVABLE, INVALID }
+
+    private final int threads;
+    private final int chunkSize;
+    private final Solver.SolverType type;
+    private final int solutionLimit;
+    private final AtomicBoolean canCancel = new AtomicBoolean(false);
+    private final ThreadLocal<DancingLinks> links = new ThreadLocal<DancingLinks>() {
+        @Override
+        protected DancingLinks initialValue() {
+            return new DancingLinks();
+        }
+    };
+
+    /**
+     * @param solutionLimit The number of solutions to look for with DANCING_LINKS, where 2
+     *                      checks that each puzzle has a unique solution.  Other types always
+     *                      stop at the first solution.
+     */
+    public BatchSolver(int threads, int chunkSize, Solver.SolverType type, int solutionLimit) {
+        if (threads < 1 || chunkSize < 1 || solutionLimit < 1) {
+            throw new IllegalArgumentException("Threads, chunk size and solution limit must be positive");
+        }
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.type = type;
+        this.solutionLimit = type == Solver.SolverType.DANCING_LINKS ? solutionLimit : 1;
+    }
+
+    /**
+     * Solves every puzzle of the input file, writing a line for each to the output.  The output
+     * is flushed but not closed.
+     */
+    public Summary solve(File input, Writer output) throws IOException {
+        long start = System.currentTimeMillis();
+        Summary summary = new Summary();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+        Deque<Future<Chunk>> pending = new ArrayDeque<>();
+        int maxPending = threads * 4;
+        try (PuzzleReader reader = new PuzzleReader(input)) {
+            Chunk chunk;
+            while ((chunk = readChunk(reader)) != null) {
+                pending.add(workers.submit(chunk));
+                if (pending.size() >= maxPending) {
+                    write(pending.poll(), output, summary);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll(), output, summary);
+            }
+            output.flush();
+        } finally {
+            canCancel.set(true);
+            workers.shutdownNow();
+        }
+        summary.elapsed = System.currentTimeMillis() - start;
+        return summary;
+    }
+
+    private Chunk readChunk(PuzzleReader reader) throws IOException {
+        Chunk chunk = new Chunk(chunkSize);
+        while (chunk.count < chunkSize && reader.next(chunk.puzzles[chunk.count])) {
+            chunk.valid[chunk.count] = reader.isLastLineValid();
+            chunk.count++;
+        }
+        return chunk.count > 0 ? chunk : null;
+    }
+
+    private void write(Future<Chunk> future, Writer output, Summary summary) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while solving", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Worker failed", e.getCause());
+        }
+        StringBuilder line = new StringBuilder(CellModel.MAX_CELLS + 32);
+        for (int i=0; i<chunk.count; i++) {
+            line.setLength(0);
+            Status status = chunk.statuses[i];
+            int[] values = status == Status.UNSOLVABLE || status == Status.INVALID
+                    ? chunk.puzzles[i] : chunk.solutions[i];
+            for (int value: values) {
+                line.append(value == 0 ? '.' : (char)('0' + value));
+            }
+            line.append(',').append(status.name())
+                    .append(',').append(chunk.steps[i])
+                    .append(',').append(chunk.nanos[i] / 1000)
+                    .append('\n');
+            output.write(line.toString());
+            summary.add(status, chunk.steps[i]);
+        }
+    }
+
+    private void solve(Chunk chunk, int index) {
+        if (!chunk.valid[index]) {
+            chunk.statuses[index] = Status.INVALID;
+            return;
+        }
+        long start = System.nanoTime();
+        if (type == Solver.SolverType.DANCING_LINKS) {
+            DancingLinks solver = links.get();
+            int found = solver.solve(chunk.puzzles[index], chunk.solutions[index], solutionLimit, canCancel);
+            chunk.steps[index] = solver.getUpdates();
+            if (found == 0) {
+                chunk.statuses[index] = Status.UNSOLVABLE;
+            } else if (solutionLimit == 1) {
+                chunk.statuses[index] = Status.SOLVED;
+            } else {
+                chunk.statuses[index] = found == 1 ? Status.UNIQUE : Status.MULTIPLE;
+            }
+        } else {
+            List<Integer> initial = new ArrayList<>(CellModel.MAX_CELLS);
+            for (int value: chunk.puzzles[index]) {
+                initial.add(value);
+            }
+            CellModel model = new CellModel(initial);
+            RestartingSolver solver = new RestartingSolver(model, type,
+                    RestartingSolver.DEFAULT_POLICY, new Random(SEED + Arrays.hashCode(chunk.puzzles[index])));
+            chunk.steps[index] = solver.solve(canCancel);
+            if (model.isSolved()) {
+                for (int i=0; i<CellModel.MAX_CELLS; i++) {
+                    chunk.solutions[index][i] = model.getCell(i).getValue();
+                }
+                chunk.statuses[index] = Status.SOLVED;
+            } else {
+                chunk.statuses[index] = Status.UNSOLVABLE;
+            }
+        }
+        chunk.nanos[index] = System.nanoTime() - start;
+    }
+
+    /**
+     * A run of consecutive puzzles from the input, and their results once solved.
+     */
+    private class Chunk implements Callable<Chunk> {
+        private final int[][] puzzles, solutions;
+        private final boolean[] valid;
+        private final Status[] statuses;
+        private final long[] steps, nanos;
+        private int count;
+
+        public Chunk(int size) {
+            puzzles = new int[size][CellModel.MAX_CELLS];
+            solutions = new int[size][CellModel.MAX_CELLS];
+            valid = new boolean[size];
+            statuses = new Status[size];
+            steps = new long[size];
+            nanos = new long[size];
+        }
+
+        @Override
+        public Chunk call() {
+            for (int i=0; i<count; i++) {
+                solve(this, i);
+            }
+            return this;
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "batch-worker-"+count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Totals for a whole batch.
+     */
+    public static class Summary {
+        private final long[] counts = new long[Status.values().length];
+        private long steps, elapsed;
+
+        private void add(Status status, long puzzleSteps) {
+            counts[status.ordinal()]++;
+            steps += puzzleSteps;
+        }
+
+        public long getCount(Status status) {
+            return counts[status.ordinal()];
+        }
+
+        public long getPuzzleCount() {
+            long total = 0;
+            for (long count: counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * The time taken by the whole batch in milliseconds.
+         */
+        public long getElapsedTime() {
+            return elapsed;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(getPuzzleCount()).append(" puzzles in ").append(elapsed).append("ms");
+            for (Status status: Status.values()) {
+                if (counts[status.ordinal()] > 0) {
+                    sb.append(", ").append(status.name().toLowerCase()).append(' ').append(counts[status.ordinal()]);
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.sudoku.dj.sudokusolver.batch;
+
+import com.sudoku.dj.sudokusolver.solver.MaskStore;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Packs mask files into a single {@link MaskStore} file:
+ *
+ *   MaskPacker <output> <input>...
+ *
+ * Inputs are files of 81 letter lines, or zip files holding them.  Every mask is checked to
+ * decode back to itself before it is written.
+ */
+public class MaskPacker {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: MaskPacker <output> <input>...");
+            return;
+        }
+        int count = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(args[0])))) {
+            out.writeInt(MaskStore.MAGIC);
+            out.writeInt(0); // the count is filled in once every input is read
+            for (int i=1; i<args.length; i++) {
+                count += pack(args[i], out);
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(args[0], "rw")) {
+            file.seek(4);
+            file.writeInt(count);
+        }
+        System.err.println("Packed "+count+" masks into "+args[0]);
+    }
+
+    private static int pack(String input, DataOutputStream out) throws IOException {
+        int count = 0;
+        InputStream in = new FileInputStream(input);
+        if (input.endsWith(".zip")) {
+            ZipInputStream zip = new ZipInputStream(in);
+            ZipEntry entry = zip.getNextEntry();
+            if (entry == null) {
+                zip.close();
+                throw new IOException("Empty zip file ["+input+"]");
+            }
+            in = zip;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, "US-ASCII"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                out.write(MaskStore.encode(line));
+                count++;
+            }
+        }
+        return count;
+    }
+}
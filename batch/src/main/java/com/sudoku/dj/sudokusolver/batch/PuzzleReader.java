@@ -0,0 +1,142 @@
+package com.sudoku.dj.sudokusolver.batch;
+
+import com.sudoku.dj.sudokusolver.solver.CellModel;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads puzzles from a file of 81 character lines, the same layout as the mask files.  Digits
+ * 1 to 9 are values, and '0' or '.' are empty cells.  The letters A to I of a mask are read as
+ * the values 1 to 9, so a mask file reads as a file of filled boards.
+ *
+ * The file is memory mapped in windows, so lines are parsed straight from the page cache without
+ * copying them through a stream, and files larger than a single mapping can be read.
+ */
+public class PuzzleReader implements Closeable {
+    private static final long WINDOW = 64L << 20;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer buffer;
+    // the file position of the start of the buffer, and of the next line to read
+    private long bufferStart, position;
+    private long lineCount;
+    private boolean lastLineValid;
+
+    public PuzzleReader(File input) throws IOException {
+        this.file = new RandomAccessFile(input, "r");
+        this.channel = file.getChannel();
+        this.size = channel.size();
+    }
+
+    /**
+     * Reads the next non-blank line into the cells array.  A line of the wrong length or with
+     * an unknown character is still returned as an empty board, and isLastLineValid() reports
+     * it.
+     * @return false at the end of the file.
+     */
+    public boolean next(int[] cells) throws IOException {
+        while (position < size) {
+            int start = map(position, false);
+            int end = findLineEnd(start);
+            if (end < 0 && !isMappedToEnd()) {
+                // the line runs past the window, so map again from the start of the line
+                start = map(position, true);
+                end = findLineEnd(start);
+                if (end < 0 && !isMappedToEnd()) {
+                    throw new IOException("Line too long at line ["+(lineCount + 1)+"]");
+                }
+            }
+            if (end < 0) {
+                // the last line has no line break
+                end = buffer.limit();
+            }
+            position = bufferStart + end + 1;
+            int length = end - start;
+            if (length > 0 && buffer.get(end - 1) == '\r') {
+                length--;
+            }
+            if (length == 0) {
+                continue;
+            }
+            lineCount++;
+            lastLineValid = parse(start, length, cells);
+            if (!lastLineValid) {
+                Arrays.fill(cells, 0);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns false if the line last returned by next() was not a well formed puzzle.
+     */
+    public boolean isLastLineValid() {
+        return lastLineValid;
+    }
+
+    /**
+     * Returns the number of puzzles read so far.
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Makes sure the buffer covers the given file position, and returns its index in the buffer.
+     * When forced, the buffer is mapped again starting from the position.
+     */
+    private int map(long pos, boolean force) throws IOException {
+        if (force || buffer == null || pos < bufferStart || pos >= bufferStart + buffer.limit()) {
+            bufferStart = pos;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW, size - pos));
+        }
+        return (int)(pos - bufferStart);
+    }
+
+    private boolean isMappedToEnd() {
+        return bufferStart + buffer.limit() == size;
+    }
+
+    private int findLineEnd(int start) {
+        int limit = buffer.limit();
+        for (int i=start; i<limit; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean parse(int start, int length, int[] cells) {
+        if (length != CellModel.MAX_CELLS) {
+            return false;
+        }
+        for (int i=0; i<CellModel.MAX_CELLS; i++) {
+            int ch = buffer.get(start + i);
+            if (ch >= '1' && ch <= '9') {
+                cells[i] = ch - '0';
+            } else if (ch >= 'A' && ch <= 'I') {
+                cells[i] = ch - 'A' + 1;
+            } else if (ch == '0' || ch == '.') {
+                cells[i] = 0;
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+}
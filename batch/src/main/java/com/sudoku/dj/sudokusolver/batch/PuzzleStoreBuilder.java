@@ -0,0 +1,118 @@
+package com.sudoku.dj.sudokusolver.batch;
+
+import com.sudoku.dj.sudokusolver.solver.CellModel;
+import com.sudoku.dj.sudokusolver.solver.DifficultyGrader;
+import com.sudoku.dj.sudokusolver.solver.GridGenerator;
+import com.sudoku.dj.sudokusolver.solver.MaskStore;
+import com.sudoku.dj.sudokusolver.solver.PuzzleDigger;
+import com.sudoku.dj.sudokusolver.solver.PuzzleStore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates graded puzzles into a {@link PuzzleStore} file:
+ *
+ *   PuzzleStoreBuilder <output> <masks> [--per-level n] [--minutes n] [--seed n]
+ *
+ * Each puzzle is dug out of a transform of a random mask from the mask store, graded, and kept
+ * if its level still needs puzzles.  Generation stops once every level has its puzzles or the
+ * time runs out, so the rarest levels can end up with fewer.
+ */
+public class PuzzleStoreBuilder {
+    private static final int DEFAULT_PER_LEVEL = 500;
+    private static final int DEFAULT_MINUTES = 10;
+    private static final int GRIDS_PER_MASK = 16;
+    private static final long MAX_DIG_MILLIS = 1000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            usage();
+            return;
+        }
+        int perLevel = DEFAULT_PER_LEVEL;
+        int minutes = DEFAULT_MINUTES;
+        long seed = System.currentTimeMillis();
+        for (int i=2; i<args.length; i++) {
+            String arg = args[i];
+            if (i + 1 < args.length && arg.equals("--per-level")) {
+                perLevel = Integer.parseInt(args[++i]);
+            } else if (i + 1 < args.length && arg.equals("--minutes")) {
+                minutes = Integer.parseInt(args[++i]);
+            } else if (i + 1 < args.length && arg.equals("--seed")) {
+                seed = Long.parseLong(args[++i]);
+            } else {
+                usage();
+                return;
+            }
+        }
+
+        DifficultyGrader.Level[] levels = DifficultyGrader.Level.values();
+        List<List<byte[]>> records = new ArrayList<>();
+        for (int i=0; i<levels.length; i++) {
+            records.add(new ArrayList<byte[]>());
+        }
+        long generated = generate(args[1], perLevel, TimeUnit.MINUTES.toMillis(minutes), new Random(seed), records);
+
+        int[] counts = new int[levels.length];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(args[0])))) {
+            for (int i=0; i<levels.length; i++) {
+                counts[i] = records.get(i).size();
+            }
+            PuzzleStore.writeHeader(out, counts);
+            for (List<byte[]> level: records) {
+                for (byte[] record: level) {
+                    out.write(record);
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder("Kept ");
+        for (int i=0; i<levels.length; i++) {
+            sb.append(i == 0 ? "" : ", ").append(levels[i].name().toLowerCase()).append(' ').append(counts[i]);
+        }
+        System.err.println(sb.append(" of ").append(generated).append(" puzzles in ").append(args[0]));
+    }
+
+    private static long generate(String masks, int perLevel, long maxMillis, Random random,
+                                 List<List<byte[]>> records) throws IOException {
+        long deadline = System.currentTimeMillis() + maxMillis;
+        PuzzleDigger digger = new PuzzleDigger(random);
+        DifficultyGrader grader = new DifficultyGrader();
+        int[] grid = new int[CellModel.MAX_CELLS];
+        int[] puzzle = new int[CellModel.MAX_CELLS];
+        long generated = 0;
+        int needed = records.size();
+        try (RandomAccessFile file = new RandomAccessFile(masks, "r")) {
+            MaskStore store = new MaskStore(file.getChannel(), 0);
+            while (needed > 0 && System.currentTimeMillis() < deadline) {
+                String mask = store.getMask(random.nextInt(store.getMaskCount()));
+                GridGenerator generator = new GridGenerator(GridGenerator.fromMask(mask), random);
+                for (int i=0; i<GRIDS_PER_MASK && needed > 0; i++) {
+                    generator.next(grid);
+                    digger.dig(grid, 0, MAX_DIG_MILLIS, puzzle, null);
+                    grader.grade(puzzle);
+                    generated++;
+                    List<byte[]> level = records.get(grader.getLevel().ordinal());
+                    if (level.size() < perLevel) {
+                        level.add(PuzzleStore.encode(grid, puzzle, grader.getScore()));
+                        if (level.size() == perLevel) {
+                            needed--;
+                        }
+                    }
+                }
+            }
+        }
+        return generated;
+    }
+
+    private static void usage() {
+        System.err.println("Usage: PuzzleStoreBuilder <output> <masks> [--per-level n] [--minutes n] [--seed n]");
+    }
+}
@@ -0,0 +1,113 @@
+package com.sudoku.dj.sudokusolver.benchmarks;
+
+import com.sudoku.dj.sudokusolver.solver.Cell;
+import com.sudoku.dj.sudokusolver.solver.CellModel;
+import com.sudoku.dj.sudokusolver.solver.DifficultyGrader;
+import com.sudoku.dj.sudokusolver.solver.SolutionCounter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cell model operations the solvers call at every step.  Each invocation moves to
+ * the next puzzle of the set, and to the next empty cell of that puzzle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CellModelBenchmark {
+    @Param({"25", "35"})
+    public int givens;
+
+    private final DifficultyGrader grader = new DifficultyGrader();
+    private CellModel[] models;
+    private int[][] emptyCells;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<List<Integer>> puzzles = Puzzles.build(Puzzles.PUZZLES_PER_SET, givens);
+        models = new CellModel[puzzles.size()];
+        emptyCells = new int[puzzles.size()][];
+        for (int i=0; i<models.length; i++) {
+            models[i] = new CellModel(puzzles.get(i));
+            List<Cell> unfilled = models[i].getUnfilledCells();
+            emptyCells[i] = new int[unfilled.size()];
+            for (int j=0; j<unfilled.size(); j++) {
+                emptyCells[i][j] = unfilled.get(j).getID();
+            }
+        }
+    }
+
+    private CellModel nextModel() {
+        next++;
+        return models[next % models.length];
+    }
+
+    private Cell nextEmptyCell(CellModel model) {
+        int[] cells = emptyCells[next % models.length];
+        return model.getCell(cells[(next / models.length) % cells.length]);
+    }
+
+    /**
+     * Sets an empty cell to one of its available values, then clears it again.
+     */
+    @Benchmark
+    public int setValue() {
+        CellModel model = nextModel();
+        Cell cell = nextEmptyCell(model);
+        int mask = cell.getAvailableMask();
+        if (mask == 0) {
+            return 0;
+        }
+        int value = Integer.numberOfTrailingZeros(mask) + 1;
+        model.setValue(cell, value);
+        model.resetValue(cell);
+        return value;
+    }
+
+    @Benchmark
+    public Set<Integer> getAvailableValues() {
+        CellModel model = nextModel();
+        return nextEmptyCell(model).getAvailableValues();
+    }
+
+    @Benchmark
+    public boolean isSolveable() {
+        return nextModel().isSolveable();
+    }
+
+    @Benchmark
+    public boolean isSolved() {
+        return nextModel().isSolved();
+    }
+
+    /**
+     * Checks whether the next puzzle has a unique solution.
+     */
+    @Benchmark
+    public int countSolutions() {
+        return SolutionCounter.countSolutions(nextModel(), 2);
+    }
+
+    @Benchmark
+    public int grade() {
+        return grader.grade(nextModel());
+    }
+}
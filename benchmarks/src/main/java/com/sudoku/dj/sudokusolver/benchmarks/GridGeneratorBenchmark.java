@@ -0,0 +1,55 @@
+package com.sudoku.dj.sudokusolver.benchmarks;
+
+import com.sudoku.dj.sudokusolver.solver.CellModel;
+import com.sudoku.dj.sudokusolver.solver.GridGenerator;
+import com.sudoku.dj.sudokusolver.solver.PuzzleDigger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures generating filled boards by transforming a seed board, which should not allocate,
+ * and digging a unique puzzle out of each board.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GridGeneratorBenchmark {
+    private final int[] grid = new int[CellModel.MAX_CELLS];
+    private final int[] puzzle = new int[CellModel.MAX_CELLS];
+    private GridGenerator generator;
+    private PuzzleDigger digger;
+
+    @Setup
+    public void setUp() {
+        generator = new GridGenerator(GridGenerator.patternGrid(), new Random(Puzzles.SEED));
+        digger = new PuzzleDigger(new Random(Puzzles.SEED));
+    }
+
+    @Benchmark
+    public int[] next() {
+        generator.next(grid);
+        return grid;
+    }
+
+    @Benchmark
+    public int dig() {
+        generator.next(grid);
+        // the budget is never reached, so every dig tries every cell
+        return digger.dig(grid, 17, TimeUnit.MINUTES.toMillis(1), puzzle, null);
+    }
+}
@@ -0,0 +1,76 @@
+package com.sudoku.dj.sudokusolver.benchmarks;
+
+import com.sudoku.dj.sudokusolver.solver.CellModel;
+import com.sudoku.dj.sudokusolver.solver.MaskStore;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds fixed sets of puzzles from the mask store shipped with the app.  Puzzles are built the same
+ * way MaskBoardGeneratorTask builds them: the letters of a mask are mapped to a shuffled set of
+ * values, and a number of cells are kept as givens while every group keeps some empty cells.
+ * The same seed always produces the same puzzles.
+ */
+public final class Puzzles {
+    public static final long SEED = 20180529L;
+    public static final int PUZZLES_PER_SET = 16;
+
+    private static final String MASKS_DIR = System.getProperty("masks.dir", "../app/src/main/assets");
+    private static final int MIN_EMPTY_PER_GROUP = 4;
+
+    private Puzzles() {
+    }
+
+    /**
+     * Returns the given number of puzzles, each with the given number of locked cells, as
+     * initial values that can be passed to the CellModel constructor.
+     */
+    public static List<List<Integer>> build(int count, int givens) {
+        Random random = new Random(SEED + givens);
+        File file = new File(MASKS_DIR, "masks.bin");
+        List<List<Integer>> puzzles = new ArrayList<>(count);
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            MaskStore store = new MaskStore(in.getChannel(), 0);
+            for (int i=0; i<count; i++) {
+                String mask = store.getMask(random.nextInt(store.getMaskCount()));
+                puzzles.add(buildPuzzle(mask, givens, random));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to read masks from ["+file.getAbsolutePath()+"]", e);
+        }
+        return puzzles;
+    }
+
+    private static List<Integer> buildPuzzle(String mask, int givens, Random random) {
+        List<Integer> values = new ArrayList<>(CellModel.MAX_CELLS_IN_GROUP);
+        for (int i=1; i<=CellModel.MAX_CELLS_IN_GROUP; i++) {
+            values.add(i);
+        }
+        Collections.shuffle(values, random);
+
+        CellModel model = new CellModel();
+        int count = 0;
+        while (count < givens) {
+            int index = random.nextInt(CellModel.MAX_CELLS);
+            if (model.getCell(index).getValue() > 0 ||
+                    model.getCell(index).getHorizontalGroup().getEmptyCellCount() <= MIN_EMPTY_PER_GROUP ||
+                    model.getCell(index).getVerticalGroup().getEmptyCellCount() <= MIN_EMPTY_PER_GROUP ||
+                    model.getCell(index).getCubeGroup().getEmptyCellCount() <= MIN_EMPTY_PER_GROUP) {
+                continue;
+            }
+            model.setValue(model.getCell(index), values.get(mask.charAt(index) - 'A'));
+            count++;
+        }
+
+        List<Integer> puzzle = new ArrayList<>(CellModel.MAX_CELLS);
+        for (int i=0; i<CellModel.MAX_CELLS; i++) {
+            puzzle.add(model.getCell(i).getValue());
+        }
+        return puzzle;
+    }
+}
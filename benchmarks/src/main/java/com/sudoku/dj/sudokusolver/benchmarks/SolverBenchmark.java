@@ -0,0 +1,78 @@
+package com.sudoku.dj.sudokusolver.benchmarks;
+
+import com.sudoku.dj.sudokusolver.solver.CellModel;
+import com.sudoku.dj.sudokusolver.solver.RestartingSolver;
+import com.sudoku.dj.sudokusolver.solver.Solver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures building a solver and solving each puzzle of a fixed set, for every solver type.
+ * Each solve starts from the locked cells of the next puzzle, with a random seeded from the
+ * puzzle index, so every run makes the same choices.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class SolverBenchmark {
+    @Param({"BACKTRACKING", "BOARD_BUILDER", "DANCING_LINKS"})
+    public Solver.SolverType type;
+
+    @Param({"25", "35"})
+    public int givens;
+
+    private final AtomicBoolean canCancel = new AtomicBoolean(false);
+    private CellModel[] models;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<List<Integer>> puzzles = Puzzles.build(Puzzles.PUZZLES_PER_SET, givens);
+        models = new CellModel[puzzles.size()];
+        for (int i=0; i<models.length; i++) {
+            models[i] = new CellModel(puzzles.get(i));
+        }
+    }
+
+    @Benchmark
+    public Solver construct() {
+        int index = next++ % models.length;
+        return new Solver(models[index], type, new Random(Puzzles.SEED + index));
+    }
+
+    /**
+     * Solves the next puzzle with the restart policy the app uses.  Resetting the unlocked
+     * cells left by the previous solve of the puzzle is part of the measurement.
+     */
+    @Benchmark
+    public int solve() {
+        int index = next++ % models.length;
+        CellModel model = models[index];
+        model.resetCells();
+        RestartingSolver solver = new RestartingSolver(model, type,
+                RestartingSolver.DEFAULT_POLICY, new Random(Puzzles.SEED + index));
+        int steps = solver.solve(canCancel);
+        if (!model.isSolved()) {
+            throw new IllegalStateException("Puzzle ["+index+"] was not solved");
+        }
+        return steps;
+    }
+}